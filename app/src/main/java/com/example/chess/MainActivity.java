@@ -136,11 +136,10 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
     @Override
     public void onClick(View view) {
-        // If you click outside the promotion window when you are about to promote the pawn, then undo
-        // the move.
+        // If you click outside the promotion window when you are about to promote the pawn, then the
+        // promotion is not played.
         if (promotionLayout.getVisibility() == View.VISIBLE && !(view instanceof PromotionOptionView)) {
-            gm.undo(undoDepth);
-            promotionLayout.setVisibility(View.GONE);
+            gm.cancelPromotion();
         }
         if (view instanceof BoardSquareView) {
             gm.actionHandler(((BoardSquareView) view).getSquareIndex());
@@ -7,10 +7,13 @@ public class Move {
     public boolean isPromotionMove;
     public boolean isDoublePawnPush;
     public boolean isCastling;
+    // The move as it is played by the game, see PackedMove.
+    public int packedMove;
 
     public Move(int initialSquareIndex, int targetSquareIndex) {
         this.initialSquareIndex = initialSquareIndex;
         this.targetSquareIndex = targetSquareIndex;
+        packedMove = PackedMove.encode(initialSquareIndex, targetSquareIndex, PackedMove.quiet);
         isPromotionMove = false;
         isDoublePawnPush = false;
         isCastling = false;
@@ -21,6 +24,7 @@ public class Move {
         targetSquareIndex = move.targetSquareIndex;
         isPromotionMove = move.isPromotionMove;
         isDoublePawnPush = move.isDoublePawnPush;
+        packedMove = move.packedMove;
     }
 
     public boolean equals(Move otherMove){
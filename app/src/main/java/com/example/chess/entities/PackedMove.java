@@ -0,0 +1,125 @@
+package com.example.chess.entities;
+
+/**
+ * A move packed in the lowest 16 bits of an int, so that moves can be generated into plain int
+ * arrays instead of creating a Move object for each of them:
+ * - bits 0-5: the initial square;
+ * - bits 6-11: the target square;
+ * - bits 12-15: the flags. Bit 2 of the flags marks a capture and bit 3 a promotion, in which
+ * case the two lowest bits of the flags tell the promotion piece.
+ * The Move class is the view of a packed move used by the UI.
+ */
+public class PackedMove {
+
+    // The value of "no move". A piece can never move to its own square, so it can't be mistaken
+    // for a real move.
+    public static final int none = 0;
+
+    public static final int quiet = 0;
+    public static final int doublePawnPush = 1;
+    public static final int kingSideCastling = 2;
+    public static final int queenSideCastling = 3;
+    public static final int capture = 4;
+    public static final int enPassantCapture = 5;
+    public static final int knightPromotion = 8;
+    public static final int bishopPromotion = 9;
+    public static final int rookPromotion = 10;
+    public static final int queenPromotion = 11;
+    public static final int knightPromotionCapture = 12;
+    public static final int bishopPromotionCapture = 13;
+    public static final int rookPromotionCapture = 14;
+    public static final int queenPromotionCapture = 15;
+
+    // The piece types indexed by the two lowest bits of a promotion flag.
+    private static final int[] promotionTypes = {Piece.knight, Piece.bishop, Piece.rook, Piece.queen};
+
+    private PackedMove() {
+    }
+
+    public static int encode(int initialSquare, int targetSquare, int flags) {
+        return initialSquare | (targetSquare << 6) | (flags << 12);
+    }
+
+    public static int getInitialSquare(int move) {
+        return move & 0x3F;
+    }
+
+    public static int getTargetSquare(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int getFlags(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & (capture << 12)) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (knightPromotion << 12)) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        int flags = getFlags(move);
+        return flags == kingSideCastling || flags == queenSideCastling;
+    }
+
+    /**
+     * @return the type of the piece the pawn is promoted to (see Piece), the move must be a
+     * promotion
+     */
+    public static int getPromotionType(int move) {
+        return promotionTypes[getFlags(move) & 3];
+    }
+
+    /**
+     * @return the move in coordinate notation, e.g. "e2e4" or "e7e8q" for a promotion
+     */
+    public static String toUci(int move) {
+        String files = "abcdefgh";
+        int initialSquare = getInitialSquare(move);
+        int targetSquare = getTargetSquare(move);
+        StringBuilder uci = new StringBuilder();
+        uci.append(files.charAt(initialSquare & 7)).append((initialSquare >> 3) + 1);
+        uci.append(files.charAt(targetSquare & 7)).append((targetSquare >> 3) + 1);
+        if (isPromotion(move)) {
+            uci.append("nbrq".charAt(getFlags(move) & 3));
+        }
+        return uci.toString();
+    }
+
+    /**
+     * Converts the packed move into the Move object used by the UI.
+     */
+    public static Move toMove(int move) {
+        int initialSquare = getInitialSquare(move);
+        int targetSquare = getTargetSquare(move);
+        int flags = getFlags(move);
+        Move view;
+        if (isCastling(move)) {
+            CastlingMove castlingMove = new CastlingMove(initialSquare, targetSquare);
+            // The rook squares are relative to the first square of the king's rank.
+            int rankIndex = initialSquare - Castling.kingInitialPosition;
+            if (flags == kingSideCastling) {
+                castlingMove.rookInitialPosition = rankIndex + Castling.kingSideRookInitialPosition;
+                castlingMove.rookFinalPosition = rankIndex + Castling.kingSideRookFinalPosition;
+            } else {
+                castlingMove.rookInitialPosition = rankIndex + Castling.queenSideRookInitialPosition;
+                castlingMove.rookFinalPosition = rankIndex + Castling.queenSideRookFinalPosition;
+            }
+            castlingMove.markAsCastling();
+            view = castlingMove;
+        } else {
+            view = new Move(initialSquare, targetSquare);
+            if (flags == doublePawnPush) {
+                view.markAsDoubleSquarePawnMove();
+            }
+            if (isPromotion(move)) {
+                view.markAsPromotionMove();
+            }
+        }
+        view.packedMove = move;
+        return view;
+    }
+}
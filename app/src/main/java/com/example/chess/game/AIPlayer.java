@@ -2,26 +2,110 @@ package com.example.chess.game;
 
 
 import com.example.chess.entities.Move;
+import com.example.chess.entities.PackedMove;
 
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class AIPlayer {
 
-    private final Game game;
-    private final MovementHandler mh;
+    /**
+     * Receives the move of a search started by findBestMoveInBackground.
+     */
+    public interface MoveListener {
+        /**
+         * Called on the search thread once the search is done.
+         *
+         * @param move the move chosen, or null if the side to move has no legal move
+         */
+        void onMoveFound(Move move);
+    }
+
+    // The size of the transposition table, in megabytes.
+    public static final int hashSize = 16;
+
+    private final ParallelSearch search;
+    // The thread the searches started by findBestMoveInBackground run on, one at a time.
+    private final ExecutorService searchThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "computer player");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final TimeManager timeManager = new TimeManager();
+    // The deepest iteration of the search, in plies.
+    public int searchDepth = MovementHandler.maxPly - 1;
+    // The number of nodes after which the search stops, 0 for no limit.
+    public long nodeLimit = 0;
+    // The time of the search of a move, in milliseconds, when the computer plays without a clock.
+    // 0 for no limit, in which case searchDepth must be small.
+    public long moveTime = 1000;
+    // The clock of the computer, in milliseconds. It is used instead of moveTime when the
+    // remaining time is greater than 0.
+    public long remainingTime = 0;
+    public long increment = 0;
+
+    public AIPlayer(Game game) {
+        this(game, 1);
+    }
+
+    /**
+     * @param threads the number of threads searching the moves, see ParallelSearch
+     */
+    public AIPlayer(Game game, int threads) {
+        search = new ParallelSearch(game, new TranspositionTable(hashSize), threads);
+        // The KPK table is computed ahead of the first search, instead of in the middle of one.
+        searchThread.submit(new Runnable() {
+            @Override
+            public void run() {
+                KpkBitbase.init();
+            }
+        });
+    }
+
+    /**
+     * @return the search of the calling thread, whose options (null move pruning and so on) the
+     * helper threads follow
+     */
+    public Search getSearch() {
+        return search.getMainSearch();
+    }
 
-    public AIPlayer(Game game, MovementHandler mh) {
-        this.game = game;
-        this.mh = mh;
+    /**
+     * Starts the search of a move on the search thread and returns at once, so that the calling
+     * thread, the one of the UI, is not blocked for the time of the search. The game must not be
+     * touched until the listener is called: the search makes its moves on it.
+     */
+    public void findBestMoveInBackground(final MoveListener listener) {
+        searchThread.submit(new Runnable() {
+            @Override
+            public void run() {
+                listener.onMoveFound(findBestMove());
+            }
+        });
     }
 
-    public Move doRandomMove() {
-        mh.generateLegalMoves();
-        List<Move> moveList = mh.legalMoves;
-        Random randomGenerator = new Random();
-        int index = randomGenerator.nextInt(moveList.size());
-        return moveList.get(index);
+    /**
+     * @return the move chosen by the search for the side to move, or null if it has no legal move
+     */
+    public Move findBestMove() {
+        if (remainingTime > 0) {
+            timeManager.startClock(remainingTime, increment, 0);
+        }
+        else if (moveTime > 0) {
+            timeManager.startFixedTime(moveTime);
+        }
+        else {
+            timeManager.startInfinite();
+        }
+        int move = search.findBestMove(searchDepth, nodeLimit, timeManager);
+        if (move == PackedMove.none) {
+            return null;
+        }
+        return PackedMove.toMove(move);
     }
     
 }
@@ -0,0 +1,14 @@
+package com.example.chess.game;
+
+/**
+ * The evaluation of a specific endgame, chosen by the MaterialTable from the material of the
+ * position. It replaces the whole generic evaluation. See Endgames for the implementations.
+ */
+public interface EndgameEvaluator {
+
+    /**
+     * @param strongSide the color of the side expected to win
+     * @return the score of the position from the point of view of the strong side
+     */
+    int evaluate(Position position, int strongSide, int sideToMove);
+}
@@ -0,0 +1,154 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * The endgames that the generic evaluation gets wrong, each with its own EndgameEvaluator:
+ * - KXK, a king with a queen or a rook (and maybe more) against a lone king: a known win, the
+ * lone king has to be driven to the edge and the kings brought together for the search to find
+ * the mate;
+ * - KBNK: a known win, but the mate is only possible in a corner of the color of the bishop;
+ * - KPK: won or drawn according to the KpkBitbase;
+ * - KRKP, a rook against a pawn: usually won, but drawn when the pawn is far advanced and
+ * supported by its king while the other king is far away.
+ * The scores of the known wins are above knownWin, so that the search always prefers them to
+ * anything the generic evaluation gives, and below the mate scores.
+ */
+public class Endgames {
+
+    public static final int knownWin = 10000;
+
+    // The bonus for the distance of the lone king from the center, indexed by its square.
+    private static final int[] pushToEdge = new int[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int rank = square >> 3;
+            int file = square & 7;
+            int fileDistance = Math.max(3 - file, file - 4);
+            int rankDistance = Math.max(3 - rank, rank - 4);
+            pushToEdge[square] = 20 * (fileDistance + rankDistance);
+        }
+    }
+
+    private Endgames() {
+    }
+
+    /**
+     * @param counts the number of pieces on the board, indexed by the piece code
+     * @return the evaluator of the endgame in which the color is the strong side, or null if the
+     * material is not one of a known endgame
+     */
+    public static EndgameEvaluator find(int[] counts, int strongSide) {
+        int weakSide = Color.oppositeColor(strongSide);
+        int strong = strongSide << 3;
+        int weak = weakSide << 3;
+        int strongMinors = counts[strong + Piece.bishop] + counts[strong + Piece.knight];
+        int strongMajors = counts[strong + Piece.queen] + counts[strong + Piece.rook];
+        int weakPieces = counts[weak + Piece.queen] + counts[weak + Piece.rook] + counts[weak + Piece.bishop] +
+                counts[weak + Piece.knight];
+        if (weakPieces == 0 && counts[weak + Piece.pawn] == 0) {
+            if (strongMajors > 0) {
+                return kxk;
+            }
+            if (counts[strong + Piece.pawn] == 0 && counts[strong + Piece.bishop] == 1 && counts[strong + Piece.knight] == 1) {
+                return kbnk;
+            }
+            if (counts[strong + Piece.pawn] == 1 && strongMinors == 0) {
+                return kpk;
+            }
+        }
+        if (weakPieces == 0 && counts[weak + Piece.pawn] == 1 && counts[strong + Piece.rook] == 1 &&
+                counts[strong + Piece.queen] == 0 && strongMinors == 0 && counts[strong + Piece.pawn] == 0) {
+            return krkp;
+        }
+        return null;
+    }
+
+    // The material of the side, pawns included, with the middlegame values.
+    private static int material(Position position, int color) {
+        int material = 0;
+        for (int type = Piece.queen; type <= Piece.pawn; type++) {
+            material += Evaluation.pieceValues[type] * Long.bitCount(position.getPieces(color, type));
+        }
+        return material;
+    }
+
+    // The closer the kings, the greater the bonus.
+    private static int pushClose(int square, int otherSquare) {
+        return 140 - 20 * PrecomputedData.squareDistance[square][otherSquare];
+    }
+
+    public static final EndgameEvaluator kxk = new EndgameEvaluator() {
+        @Override
+        public int evaluate(Position position, int strongSide, int sideToMove) {
+            int strongKing = position.getKingSquare(strongSide);
+            int weakKing = position.getKingSquare(Color.oppositeColor(strongSide));
+            return knownWin + material(position, strongSide) + pushToEdge[weakKing] + pushClose(strongKing, weakKing);
+        }
+    };
+
+    public static final EndgameEvaluator kbnk = new EndgameEvaluator() {
+        @Override
+        public int evaluate(Position position, int strongSide, int sideToMove) {
+            int strongKing = position.getKingSquare(strongSide);
+            int weakKing = position.getKingSquare(Color.oppositeColor(strongSide));
+            int bishop = Long.numberOfTrailingZeros(position.getPieces(strongSide, Piece.bishop));
+            // a1 and h8 are dark squares, a8 and h1 light ones.
+            boolean darkBishop = (((bishop >> 3) + (bishop & 7)) & 1) == 0;
+            int cornerDistance = darkBishop ?
+                    Math.min(PrecomputedData.squareDistance[weakKing][0], PrecomputedData.squareDistance[weakKing][63]) :
+                    Math.min(PrecomputedData.squareDistance[weakKing][7], PrecomputedData.squareDistance[weakKing][56]);
+            return knownWin + material(position, strongSide) + 200 - 25 * cornerDistance + pushClose(strongKing, weakKing);
+        }
+    };
+
+    public static final EndgameEvaluator kpk = new EndgameEvaluator() {
+        @Override
+        public int evaluate(Position position, int strongSide, int sideToMove) {
+            if (!KpkBitbase.isWin(position, strongSide, sideToMove)) {
+                return 0;
+            }
+            int pawn = Long.numberOfTrailingZeros(position.getPieces(strongSide, Piece.pawn));
+            int relativeRank = strongSide == Color.white ? pawn >> 3 : 7 - (pawn >> 3);
+            return knownWin + Evaluation.endgamePieceValues[Piece.pawn] + 10 * relativeRank;
+        }
+    };
+
+    public static final EndgameEvaluator krkp = new EndgameEvaluator() {
+        @Override
+        public int evaluate(Position position, int strongSide, int sideToMove) {
+            int weakSide = Color.oppositeColor(strongSide);
+            int strongKing = position.getKingSquare(strongSide);
+            int weakKing = position.getKingSquare(weakSide);
+            int rook = Long.numberOfTrailingZeros(position.getPieces(strongSide, Piece.rook));
+            int pawn = Long.numberOfTrailingZeros(position.getPieces(weakSide, Piece.pawn));
+            // The pawn walks towards this square, one rank at a time.
+            int promotionSquare = weakSide == Color.white ? 56 + (pawn & 7) : pawn & 7;
+            int forward = weakSide == Color.white ? 8 : -8;
+            // The ranks counted from the side of the strong king.
+            int weakKingRank = strongSide == Color.white ? weakKing >> 3 : 7 - (weakKing >> 3);
+            int strongKingRank = strongSide == Color.white ? strongKing >> 3 : 7 - (strongKing >> 3);
+            int[][] distance = PrecomputedData.squareDistance;
+            int rookValue = Evaluation.endgamePieceValues[Piece.rook];
+
+            // The strong king stands in the way of the pawn.
+            if ((PawnStructure.frontSpan(weakSide, pawn) & (1L << strongKing)) != 0) {
+                return rookValue - distance[strongKing][pawn];
+            }
+            // The weak king is too far from its pawn and from the rook.
+            if (distance[weakKing][pawn] >= 3 + (sideToMove == weakSide ? 1 : 0) && distance[weakKing][rook] >= 3) {
+                return rookValue - distance[strongKing][pawn];
+            }
+            // The pawn is far advanced and supported, the strong king is too far to help.
+            if (weakKingRank <= 2 && distance[weakKing][pawn] == 1 && strongKingRank >= 3 &&
+                    distance[strongKing][pawn] > 2 + (sideToMove == strongSide ? 1 : 0)) {
+                return 80 - 8 * distance[strongKing][pawn];
+            }
+            int stopSquare = pawn + forward;
+            return 200 - 8 * (distance[strongKing][stopSquare] - distance[weakKing][stopSquare] -
+                    distance[pawn][promotionSquare]);
+        }
+    };
+}
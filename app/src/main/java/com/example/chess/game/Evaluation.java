@@ -0,0 +1,209 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * Static evaluation of a position: the material of both sides plus a bonus or penalty for the
+ * square every piece stands on (piece-square tables). The scores are in centipawns.
+ * The evaluation is tapered: every piece has a middlegame and an endgame value, and the score is
+ * a mix of the two weighted by the game phase, which goes down from maxPhase to 0 as the pieces
+ * other than the pawns and the kings are traded. That way the king goes from hiding in its corner
+ * to walking to the center, and the pawns become worth more as they near promotion.
+ * The sums of the values of the pieces and the phase are kept by the Position itself, updated
+ * every time a piece is added or removed, so evaluating a position costs nothing more than
+ * mixing two numbers.
+ */
+public class Evaluation {
+
+    // Indexed by the piece type. These are the middlegame values, also used by the move ordering
+    // and the static exchange evaluation.
+    public static final int[] pieceValues = {0, 0, 900, 500, 330, 320, 100};
+    public static final int[] endgamePieceValues = {0, 0, 920, 520, 310, 300, 120};
+    // The weight of every piece type in the game phase, indexed by the piece type.
+    public static final int[] phaseWeights = {0, 0, 4, 2, 1, 1, 0};
+    // The phase of the initial position, the phase of a position is at most this much.
+    public static final int maxPhase = 24;
+
+    /*
+    The piece-square tables are written the way the board is seen by white, the 8th rank on the
+    first line, so the value of a white piece on square s is at index s ^ 56 and the value of a
+    black piece, seen from its own side, at index s.
+     */
+    private static final int[] kingTable = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20
+    };
+    private static final int[] queenTable = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+    private static final int[] rookTable = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0
+    };
+    private static final int[] bishopTable = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] knightTable = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] pawnTable = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+    // In the endgame the king is a fighting piece and belongs in the center.
+    private static final int[] endgameKingTable = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    };
+    // In the endgame a pawn is worth more the closer it is to promotion, wherever its file.
+    private static final int[] endgamePawnTable = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         20,  20,  20,  20,  20,  20,  20,  20,
+         10,  10,  10,  10,  10,  10,  10,  10,
+         10,  10,  10,  10,  10,  10,  10,  10,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+    // Indexed by the piece type.
+    private static final int[][] middlegameTables = {null, kingTable, queenTable, rookTable, bishopTable, knightTable, pawnTable};
+    private static final int[][] endgameTables = {null, endgameKingTable, queenTable, rookTable, bishopTable, knightTable, endgamePawnTable};
+
+    // The material and square value of every piece on every square, from the point of view of
+    // white: the values of the black pieces are negative. Indexed by the piece code, then by the
+    // square.
+    public static final int[][] middlegameValues = new int[(Color.white << 3) + Piece.pawn + 1][64];
+    public static final int[][] endgameValues = new int[(Color.white << 3) + Piece.pawn + 1][64];
+
+    static {
+        for (int type = Piece.king; type <= Piece.pawn; type++) {
+            for (int square = 0; square < 64; square++) {
+                middlegameValues[Piece.white + type][square] = pieceValues[type] + middlegameTables[type][square ^ 56];
+                middlegameValues[Piece.black + type][square] = -pieceValues[type] - middlegameTables[type][square];
+                endgameValues[Piece.white + type][square] = endgamePieceValues[type] + endgameTables[type][square ^ 56];
+                endgameValues[Piece.black + type][square] = -endgamePieceValues[type] - endgameTables[type][square];
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * @return the score of the material and the squares of the pieces only, from the point of
+     * view of the side to move
+     */
+    public static int evaluate(Position position, int sideToMove) {
+        int score = taper(position.middlegameScore, position.endgameScore, position.phase);
+        return sideToMove == Color.white ? score : -score;
+    }
+
+    /**
+     * The full evaluation: the material and the squares of the pieces, plus the pawn structure
+     * and the terms of the kings and the pawns (see PawnStructure), plus the material imbalance.
+     * The endgame score is scaled down when the side it favors can't win (see MaterialTable).
+     * The known endgames are evaluated by their own EndgameEvaluator instead, and when the
+     * position has an NnueAccumulator the other positions are evaluated by the neural network.
+     *
+     * @param pawnTable     the cache of the pawn structure of the calling thread
+     * @param materialTable the cache of the material of the calling thread
+     * @return the score of the position from the point of view of the side to move
+     */
+    public static int evaluate(Position position, int sideToMove, PawnHashTable pawnTable, MaterialTable materialTable) {
+        int materialIndex = materialTable.probe(position);
+        EndgameEvaluator endgame = materialTable.getEndgame(materialIndex);
+        if (endgame != null) {
+            int strongSide = materialTable.getStrongSide(materialIndex);
+            int score = endgame.evaluate(position, strongSide, sideToMove);
+            return sideToMove == strongSide ? score : -score;
+        }
+        if (position.accumulator != null) {
+            return position.accumulator.evaluate(sideToMove);
+        }
+
+        int pawnIndex = pawnTable.probe(position);
+        int middlegameScore = position.middlegameScore + pawnTable.getMiddlegameScore(pawnIndex) +
+                PawnStructure.kingShield(position, Color.white) - PawnStructure.kingShield(position, Color.black);
+        int endgameScore = position.endgameScore + pawnTable.getEndgameScore(pawnIndex) +
+                PawnStructure.passedPawnKingDistance(position, Color.white, pawnTable.getPassedPawns(pawnIndex, Color.white)) -
+                PawnStructure.passedPawnKingDistance(position, Color.black, pawnTable.getPassedPawns(pawnIndex, Color.black));
+        int winningSide = endgameScore > 0 ? Color.white : Color.black;
+        endgameScore = endgameScore * materialTable.getScaleFactor(materialIndex, winningSide) / MaterialTable.normalScale;
+        int score = taper(middlegameScore, endgameScore, materialTable.getPhase(materialIndex)) +
+                materialTable.getImbalance(materialIndex);
+        return sideToMove == Color.white ? score : -score;
+    }
+
+    /**
+     * Same as evaluate, but the sums are computed again from the pieces on the board. It is
+     * much slower, and only meant to check the incremental sums.
+     */
+    public static int evaluateFromScratch(Position position, int sideToMove) {
+        int middlegameScore = 0;
+        int endgameScore = 0;
+        int phase = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != Piece.empty) {
+                middlegameScore += middlegameValues[piece][square];
+                endgameScore += endgameValues[piece][square];
+                phase += phaseWeights[piece & 7];
+            }
+        }
+        int score = taper(middlegameScore, endgameScore, phase);
+        return sideToMove == Color.white ? score : -score;
+    }
+
+    // A promoted piece can take the phase above its maximum.
+    private static int taper(int middlegameScore, int endgameScore, int phase) {
+        phase = Math.min(phase, maxPhase);
+        return (middlegameScore * phase + endgameScore * (maxPhase - phase)) / maxPhase;
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.chess.game;
 
 import com.example.chess.entities.Piece;
-import com.example.chess.entities.Square;
 import com.example.chess.utility.Color;
 
 import java.util.HashMap;
@@ -88,21 +87,23 @@ public class Fen {
     }
 
     public void updateFen(Game game) {
-        updatePiecePlacement(game.board);
+        updatePiecePlacement(game.position);
         updateSideToMove(game.sideToMove);
         updateCastlingAbility(game.white_king_side_castling, game.white_queen_side_castling, game.black_king_side_castling, game.black_queen_side_castling);
         updateEnPassantSquareTarget(game.enPassant);
+        halfmoveClock = String.valueOf(game.halfmoveClock);
+        fullmoveCounter = String.valueOf(game.fullmoveCounter);
     }
     /**
      * After a move is made the FEN is updated.
      */
-    private void updatePiecePlacement(Square[] board) {
+    private void updatePiecePlacement(Position position) {
         int numberEmptySquares = 0;
         StringBuilder positionsFen = new StringBuilder();
         int piece;
         for (int rank = 7; rank >= 0; rank--) {
             for (int file = 0; file < 8; file++) {
-                piece = board[rank * 8 + file].getPiece();
+                piece = position.getPiece(rank * 8 + file);
                 if (piece == Piece.empty) {
                     numberEmptySquares++;
                 } else {
@@ -154,9 +155,10 @@ public class Fen {
 
     }
 
-    private void updateEnPassantSquareTarget(Integer enPassant) {
-        if (enPassant != null) {
-            int rank = enPassant >> 3;
+    private void updateEnPassantSquareTarget(int enPassant) {
+        if (enPassant != Game.noEnPassant) {
+            // The ranks are numbered from 1 in the FEN.
+            int rank = (enPassant >> 3) + 1;
             int file = enPassant % 8;
             enPassantTargetSquare = fileIndexToString.get(file) + rank;
         }
@@ -165,12 +167,13 @@ public class Fen {
         }
     }
 
-    public Square[] getPiecePlacement() {
-        Square[] board = new Square[64];
-        // Create an empty board.
-        for (int i = 0; i < 64; i++) {
-            board[i] = new Square(i, 0);
-        }
+    /**
+     * Places the pieces described by the FEN on the given position. The previous content of the
+     * position is removed.
+     */
+    public void loadPiecePlacement(Position position) {
+        // Start from an empty board.
+        position.clear();
         int file = 0, rank = 7, squareIndex;
         // Fill the board with pieces.
         for (int i = 0; i < piecePlacement.length(); i++) {
@@ -184,13 +187,13 @@ public class Fen {
                 } else {
                     squareIndex = (rank) * 8 + file;
                     Integer checkIfExists = pieceFromSymbol.get(symbol);
-                    int piece = checkIfExists != null ? checkIfExists : 0;
-                    board[squareIndex] = new Square(squareIndex, piece);
+                    if (checkIfExists != null) {
+                        position.addPiece(squareIndex, checkIfExists);
+                    }
                     file++;
                 }
             }
         }
-        return board;
     }
 
     public int getSideToMove() {
@@ -200,19 +203,27 @@ public class Fen {
         return Color.black;
     }
 
-    public Integer getEnPassantSquareTarget() {
-        Integer enPassant;
+    public int getEnPassantSquareTarget() {
+        int enPassant;
         if (enPassantTargetSquare.equals("-")) {
-            enPassant = null;
+            enPassant = Game.noEnPassant;
         }
         else {
             Integer file = fileCharacterToIndex.get(enPassantTargetSquare.charAt(0));
-            int rank = Character.getNumericValue(enPassantTargetSquare.charAt(1));
-            enPassant = file != null ? rank * 8 + file : null;
+            int rank = Character.getNumericValue(enPassantTargetSquare.charAt(1)) - 1;
+            enPassant = file != null ? rank * 8 + file : Game.noEnPassant;
         }
         return enPassant;
     }
 
+    public int getHalfmoveClock() {
+        return Integer.parseInt(halfmoveClock);
+    }
+
+    public int getFullmoveCounter() {
+        return Integer.parseInt(fullmoveCounter);
+    }
+
     public String getCastlingAbility() {
         return castlingAbility;
     }
@@ -1,10 +1,9 @@
 package com.example.chess.game;
 
 import com.example.chess.entities.Castling;
-import com.example.chess.entities.CastlingMove;
 import com.example.chess.entities.Move;
+import com.example.chess.entities.PackedMove;
 import com.example.chess.entities.Piece;
-import com.example.chess.entities.Square;
 import com.example.chess.utility.Color;
 
 import java.util.ArrayList;
@@ -19,17 +18,42 @@ import java.util.Map;
  */
 public class Game {
 
-    public Square[] board = new Square[64];
+    public Position position = new Position();
     public int sideToMove;
     public Map<String, Boolean> castlingAbility = new HashMap<>();
     public boolean white_queen_side_castling = false;
     public boolean white_king_side_castling = false;
     public boolean black_queen_side_castling = false;
     public boolean black_king_side_castling = false;
-    public Integer enPassant = null;
+    public int enPassant = noEnPassant;
     public int halfmoveClock;
     public int fullmoveCounter;
     private Fen FEN;
+    // The Zobrist key of the castling rights, of the en passant square and of the side to move.
+    // The key of the pieces is kept by the position, getZobristKey combines the two.
+    private long stateKey;
+
+    // Value of enPassant when no en passant capture is available.
+    public static final int noEnPassant = -1;
+    // The maximum number of half moves that can be taken back with unmakeMove.
+    public static final int maxHistoryLength = 2048;
+    // When set, the key is recomputed from scratch after every move made or taken back and
+    // compared with the incremental one. It is far too slow for anything but debugging.
+    public static boolean debugZobristKeys = false;
+
+    /*
+    The state that cannot be recomputed when a move is taken back is saved on these stacks by
+    makeMove, one entry per half move, and restored by unmakeMove. They are allocated once, so
+    making and unmaking a move does not create any object.
+     */
+    private final int[] moveStack = new int[maxHistoryLength];
+    private final int[] capturedPieceStack = new int[maxHistoryLength];
+    private final int[] castlingRightsStack = new int[maxHistoryLength];
+    private final int[] enPassantStack = new int[maxHistoryLength];
+    private final int[] halfmoveClockStack = new int[maxHistoryLength];
+    // The key of the position before each move.
+    private final long[] keyStack = new long[maxHistoryLength];
+    private int historyLength = 0;
 
     // En Passant is not available.
     // EnPassant should be available only 1 turn.
@@ -51,19 +75,45 @@ public class Game {
         clearBoard();
     }
 
+    /**
+     * Copy constructor. The copy has its own board and state, so it can be searched on another
+     * thread without touching the original. The moves played before the copy was made can't be
+     * taken back on the copy, but the keys of the positions since the last capture or pawn move
+     * are kept, so that the copy still sees the repetitions of these positions.
+     */
+    public Game(Game game) {
+        FEN = new Fen(game.FEN.toString());
+        copyFrom(game);
+        gameHistory.add(FEN.toString());
+    }
+
+    /**
+     * Makes this game a copy of the other one, the same way as the copy constructor, but reusing
+     * its own board and stacks. The game history is not copied.
+     */
+    public void copyFrom(Game game) {
+        position.copyFrom(game.position);
+        sideToMove = game.sideToMove;
+        castlingAbility.clear();
+        castlingAbility.putAll(game.castlingAbility);
+        setCastlingRights(game.getCastlingRights());
+        enPassant = game.enPassant;
+        halfmoveClock = game.halfmoveClock;
+        fullmoveCounter = game.fullmoveCounter;
+        stateKey = game.stateKey;
+        copyRepetitionHistory(game);
+        FEN.updateFen(this);
+    }
+
     public void clearBoard() {
-        for (int i = 0; i < 64; i++) {
-            board[i] = new Square(i, 0);
-        }
+        position.clear();
     }
 
+    /**
+     * The king squares are tracked by the position as the pieces are moved, so this is a lookup.
+     */
     public int findKingPosition(int color) {
-        for (Square square : board) {
-            if (square.getPiece() == ((color << 3) + Piece.king)) {
-                return square.getPosition();
-            }
-        }
-        return 0;
+        return position.getKingSquare(color);
     }
 
 
@@ -73,14 +123,94 @@ public class Game {
      * state (after any number of moves).
      */
     public void loadGameStateFromFen() {
-        board = FEN.getPiecePlacement();
+        FEN.loadPiecePlacement(position);
         enPassant = FEN.getEnPassantSquareTarget();
         sideToMove = FEN.getSideToMove();
+        halfmoveClock = FEN.getHalfmoveClock();
+        fullmoveCounter = FEN.getFullmoveCounter();
         updateCastling(FEN.getCastlingAbility());
+        historyLength = 0;
+        stateKey = Zobrist.computeKey(this) ^ position.pieceKey;
+    }
 
+    /**
+     * @return the Zobrist key of the current position, see Zobrist
+     */
+    public long getZobristKey() {
+        return position.pieceKey ^ stateKey;
+    }
+
+    /**
+     * Makes the search evaluate the positions with the neural network instead of the hand-written
+     * evaluation, except in the endgames that have their own EndgameEvaluator.
+     *
+     * @param network the network, or null to go back to the hand-written evaluation
+     */
+    public void setNetwork(NnueNetwork network) {
+        if (network == null) {
+            position.accumulator = null;
+        }
+        else {
+            position.accumulator = new NnueAccumulator(network);
+            position.accumulator.refresh(position);
+        }
+    }
+
+    /**
+     * @return the last move played with makeMove, or PackedMove.none if there is none to take back
+     */
+    public int getLastMove() {
+        return historyLength > 0 ? moveStack[historyLength - 1] : PackedMove.none;
+    }
+
+    /**
+     * Copies the keys of the last halfmoveClock positions of the other game, the only ones
+     * isRepetition looks at. The moves that led to them are not copied: their entries in the
+     * move stack are PackedMove.none, and they must not be taken back.
+     */
+    private void copyRepetitionHistory(Game game) {
+        int keptLength = Math.min(game.halfmoveClock, game.historyLength);
+        System.arraycopy(game.keyStack, game.historyLength - keptLength, keyStack, 0, keptLength);
+        for (int i = 0; i < keptLength; i++) {
+            moveStack[i] = PackedMove.none;
+        }
+        historyLength = keptLength;
+    }
+
+    /**
+     * @return true if the current position already occurred since the last capture or pawn move,
+     * which are the only moves that can't be taken back, with the same side to move
+     */
+    public boolean isRepetition() {
+        long key = getZobristKey();
+        int oldestIndex = Math.max(0, historyLength - halfmoveClock);
+        for (int i = historyLength - 2; i >= oldestIndex; i -= 2) {
+            if (keyStack[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkZobristKey() {
+        long expectedKey = Zobrist.computeKey(this);
+        if (getZobristKey() != expectedKey) {
+            throw new IllegalStateException("Zobrist key " + Long.toHexString(getZobristKey()) + " should be " +
+                    Long.toHexString(expectedKey) + " in " + FEN.toString());
+        }
+        if (position.pawnKey != Zobrist.computePawnKey(position)) {
+            throw new IllegalStateException("Pawn key " + Long.toHexString(position.pawnKey) + " should be " +
+                    Long.toHexString(Zobrist.computePawnKey(position)) + " in " + FEN.toString());
+        }
+        if (position.materialKey != Zobrist.computeMaterialKey(position)) {
+            throw new IllegalStateException("Material key " + Long.toHexString(position.materialKey) + " should be " +
+                    Long.toHexString(Zobrist.computeMaterialKey(position)) + " in " + FEN.toString());
+        }
     }
 
     public void updateCastling(String castling) {
+        // The rights that are not listed in the FEN are not available.
+        setCastlingRights(0);
         for (int i = 0; i < castling.length(); i++) {
             char castlingSymbol = castling.charAt(i);
             switch (castlingSymbol) {
@@ -92,13 +222,16 @@ public class Game {
                     break;
                 case 'k':
                     black_king_side_castling = true;
+                    break;
                 case 'q':
                     black_queen_side_castling = true;
+                    break;
             }
         }
     }
     
     public void checkIfMoveDisablesCastling(int piecePosition) {
+        int previousRights = getCastlingRights();
         // If the queen-side white rook is moved and white long castling is still available, then disable it.
         if (piecePosition == (Castling.whiteIndex + Castling.queenSideRookInitialPosition) && white_queen_side_castling) {
             white_queen_side_castling = false;
@@ -123,64 +256,229 @@ public class Game {
         if (piecePosition == (Castling.blackIndex + Castling.kingInitialPosition) && (black_king_side_castling || black_queen_side_castling)) {
             black_queen_side_castling = black_king_side_castling = false;
         }
+        stateKey ^= Zobrist.castlingKeys[previousRights] ^ Zobrist.castlingKeys[getCastlingRights()];
     }
 
-    public void doCastling(CastlingMove castlingMove) {
-        int rookToMove;
-        int rookGoesTo;
-        rookToMove = castlingMove.rookInitialPosition;
-        rookGoesTo = castlingMove.rookFinalPosition;
-        board[rookGoesTo].setPiece(board[rookToMove].getPiece());
-        board[rookToMove].setPiece(Piece.empty);
-    }
-    
     /**
-     * @// TODO: 2/28/2021
-     * Here computer move should be added after endAction();
+     * Moves the rook of a castling move. The king has already been moved.
+     *
+     * @param move the packed castling move
      */
-    public void executeMove(Move move) {
-        int pieceToMove = board[move.initialSquareIndex].getPiece();
-        board[move.initialSquareIndex].setPiece(Piece.empty);
-        board[move.targetSquareIndex].setPiece(pieceToMove);
-
-        if (move instanceof CastlingMove) {
-            doCastling((CastlingMove) move);
+    public void doCastling(int move) {
+        int rankIndex = sideToMove == Color.white ? Castling.whiteIndex : Castling.blackIndex;
+        if (PackedMove.getFlags(move) == PackedMove.kingSideCastling) {
+            position.movePiece(rankIndex + Castling.kingSideRookInitialPosition, rankIndex + Castling.kingSideRookFinalPosition);
+        }
+        else {
+            position.movePiece(rankIndex + Castling.queenSideRookInitialPosition, rankIndex + Castling.queenSideRookFinalPosition);
         }
+    }
 
-        if (Piece.isPieceType(pieceToMove, Piece.king) || Piece.isPieceType(pieceToMove, Piece.rook)) {
-            checkIfMoveDisablesCastling(move.initialSquareIndex);
+    /**
+     * The four castling flags packed in the lowest 4 bits of an int, so that they can be saved on
+     * the undo stack.
+     */
+    public int getCastlingRights() {
+        int rights = 0;
+        if (white_king_side_castling) {
+            rights |= 1;
+        }
+        if (white_queen_side_castling) {
+            rights |= 2;
+        }
+        if (black_king_side_castling) {
+            rights |= 4;
+        }
+        if (black_queen_side_castling) {
+            rights |= 8;
         }
+        return rights;
+    }
+
+    public void setCastlingRights(int rights) {
+        stateKey ^= Zobrist.castlingKeys[getCastlingRights()] ^ Zobrist.castlingKeys[rights];
+        white_king_side_castling = (rights & 1) != 0;
+        white_queen_side_castling = (rights & 2) != 0;
+        black_king_side_castling = (rights & 4) != 0;
+        black_queen_side_castling = (rights & 8) != 0;
+    }
+
+    /**
+     * Plays the move on the board and saves what is needed to take it back with unmakeMove.
+     * Unlike executeMove, the FEN and the game history are not updated, which makes this the
+     * method to be used when searching through moves.
+     *
+     * @param move a legal move, packed as described in PackedMove
+     */
+    public void makeMove(int move) {
+        int initialSquare = PackedMove.getInitialSquare(move);
+        int targetSquare = PackedMove.getTargetSquare(move);
+        int flags = PackedMove.getFlags(move);
+
+        moveStack[historyLength] = move;
+        castlingRightsStack[historyLength] = getCastlingRights();
+        enPassantStack[historyLength] = enPassant;
+        halfmoveClockStack[historyLength] = halfmoveClock;
+        keyStack[historyLength] = getZobristKey();
+        // The pieces moved below update the key of the position themselves, the en passant
+        // square is taken out of the key while its capturing pawns are still on the board.
+        stateKey ^= Zobrist.enPassantKey(position, enPassant, sideToMove);
+
+        int pieceToMove = position.getPiece(initialSquare);
+        int capturedPiece = position.movePiece(initialSquare, targetSquare);
 
         /*
         If the player makes the enPassant move, then the pawn that has to be removed from the
-        game is either above or below the clickedSquare depending of the color of the player.
+        game is either above or below the target square depending of the color of the player.
          */
-        if (enPassant != null &&  enPassant == move.targetSquareIndex) {
+        if (flags == PackedMove.enPassantCapture) {
             if (sideToMove == Color.black) {
-                board[move.targetSquareIndex+8].setPiece(Piece.empty);
+                capturedPiece = position.removePiece(targetSquare + 8);
             }
             else {
-                board[move.targetSquareIndex-8].setPiece(Piece.empty);
+                capturedPiece = position.removePiece(targetSquare - 8);
             }
         }
-        if (move.isDoublePawnPush) {
+        else if (PackedMove.isCastling(move)) {
+            doCastling(move);
+        }
+        if (PackedMove.isPromotion(move)) {
+            position.removePiece(targetSquare);
+            position.addPiece(targetSquare, (sideToMove << 3) + PackedMove.getPromotionType(move));
+        }
+
+        if (Piece.isPieceType(pieceToMove, Piece.king) || Piece.isPieceType(pieceToMove, Piece.rook)) {
+            checkIfMoveDisablesCastling(initialSquare);
+        }
+        // A rook captured on its initial square can't castle anymore either.
+        if (capturedPiece != Piece.empty) {
+            checkIfMoveDisablesCastling(targetSquare);
+        }
+        capturedPieceStack[historyLength] = capturedPiece;
+        historyLength++;
+
+        if (flags == PackedMove.doublePawnPush) {
             if (sideToMove == Color.white) {
-                enPassant = move.targetSquareIndex - 8;
+                enPassant = targetSquare - 8;
             }
             else {
-                enPassant = move.targetSquareIndex + 8;
+                enPassant = targetSquare + 8;
             }
         }
         else {
-            if (enPassant != null) {
-                enPassant = null;
+            enPassant = noEnPassant;
+        }
+        stateKey ^= Zobrist.enPassantKey(position, enPassant, Color.oppositeColor(sideToMove)) ^ Zobrist.sideKey;
+
+        if (Piece.isPieceType(pieceToMove, Piece.pawn) || capturedPiece != Piece.empty) {
+            halfmoveClock = 0;
+        }
+        else {
+            halfmoveClock++;
+        }
+        if (sideToMove == Color.black) {
+            fullmoveCounter++;
+        }
+        sideToMove = Color.oppositeColor(sideToMove);
+        if (debugZobristKeys) {
+            checkZobristKey();
+        }
+    }
+
+    /**
+     * Takes back the last move played with makeMove.
+     */
+    public void unmakeMove() {
+        historyLength--;
+        int move = moveStack[historyLength];
+        int initialSquare = PackedMove.getInitialSquare(move);
+        int targetSquare = PackedMove.getTargetSquare(move);
+        int flags = PackedMove.getFlags(move);
+
+        sideToMove = Color.oppositeColor(sideToMove);
+        if (sideToMove == Color.black) {
+            fullmoveCounter--;
+        }
+        setCastlingRights(castlingRightsStack[historyLength]);
+        enPassant = enPassantStack[historyLength];
+        halfmoveClock = halfmoveClockStack[historyLength];
+
+        int movedPiece = position.removePiece(targetSquare);
+        // A promoted piece goes back to being a pawn.
+        if (PackedMove.isPromotion(move)) {
+            movedPiece = (sideToMove << 3) + Piece.pawn;
+        }
+        position.addPiece(initialSquare, movedPiece);
+
+        if (PackedMove.isCastling(move)) {
+            int rankIndex = sideToMove == Color.white ? Castling.whiteIndex : Castling.blackIndex;
+            if (flags == PackedMove.kingSideCastling) {
+                position.movePiece(rankIndex + Castling.kingSideRookFinalPosition, rankIndex + Castling.kingSideRookInitialPosition);
+            }
+            else {
+                position.movePiece(rankIndex + Castling.queenSideRookFinalPosition, rankIndex + Castling.queenSideRookInitialPosition);
             }
         }
 
+        int capturedPiece = capturedPieceStack[historyLength];
+        if (capturedPiece != Piece.empty) {
+            int capturedSquare = targetSquare;
+            if (flags == PackedMove.enPassantCapture) {
+                capturedSquare = sideToMove == Color.black ? targetSquare + 8 : targetSquare - 8;
+            }
+            position.addPiece(capturedSquare, capturedPiece);
+        }
+        stateKey = keyStack[historyLength] ^ position.pieceKey;
+        if (debugZobristKeys) {
+            checkZobristKey();
+        }
+    }
+
+    /**
+     * Passes the turn to the other side without moving anything, for null move pruning. It is
+     * taken back with unmakeNullMove, not unmakeMove, and getLastMove gives PackedMove.none after
+     * it. The halfmove clock starts again, so that no repetition is found across a null move.
+     */
+    public void makeNullMove() {
+        moveStack[historyLength] = PackedMove.none;
+        capturedPieceStack[historyLength] = Piece.empty;
+        castlingRightsStack[historyLength] = getCastlingRights();
+        enPassantStack[historyLength] = enPassant;
+        halfmoveClockStack[historyLength] = halfmoveClock;
+        keyStack[historyLength] = getZobristKey();
+        historyLength++;
+
+        stateKey ^= Zobrist.enPassantKey(position, enPassant, sideToMove) ^ Zobrist.sideKey;
+        enPassant = noEnPassant;
+        halfmoveClock = 0;
+        sideToMove = Color.oppositeColor(sideToMove);
+        if (debugZobristKeys) {
+            checkZobristKey();
+        }
+    }
+
+    /**
+     * Takes back the null move played last with makeNullMove.
+     */
+    public void unmakeNullMove() {
+        historyLength--;
         sideToMove = Color.oppositeColor(sideToMove);
+        enPassant = enPassantStack[historyLength];
+        halfmoveClock = halfmoveClockStack[historyLength];
+        stateKey = keyStack[historyLength] ^ position.pieceKey;
+        if (debugZobristKeys) {
+            checkZobristKey();
+        }
+    }
+
+    /**
+     * @// TODO: 2/28/2021
+     * Here computer move should be added after endAction();
+     */
+    public void executeMove(Move move) {
+        makeMove(move.packedMove);
         FEN.updateFen(this);
         gameHistory.add(FEN.toString());
-
     }
 
     /**
@@ -197,24 +495,23 @@ public class Game {
                 gameHistory.remove(gameHistory.size() - 1);
             }
             FEN = new Fen(gameHistory.get(gameHistory.size() - 1));
-            loadGameStateFromFen();
+            if (historyLength >= depth) {
+                for (int i = 0; i < depth; i++) {
+                    unmakeMove();
+                }
+            }
+            else {
+                loadGameStateFromFen();
+            }
         }
     }
 
-    public void promotePawn(int pawnPosition, int promotedTo) {
-        board[pawnPosition].setPiece(promotedTo);
-        FEN.updateFen(this);
-        gameHistory.remove(gameHistory.size() - 1);
-        gameHistory.add(FEN.toString());
-
-    }
-
 
     public int getSideToMove() {
         return sideToMove;
     }
-    public Square[] getBoard() {
-        return board;
+    public Position getPosition() {
+        return position;
     }
 
 }
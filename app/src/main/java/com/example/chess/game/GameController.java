@@ -1,6 +1,7 @@
 package com.example.chess.game;
 
 import com.example.chess.entities.Move;
+import com.example.chess.entities.PackedMove;
 import com.example.chess.entities.Piece;
 import com.example.chess.entities.PlayMode;
 import com.example.chess.entities.Square;
@@ -16,19 +17,21 @@ public class GameController {
     private final MovementHandler mh;
 
     private Square pieceToMove = null;
-    private int promotedPawnIndex;
-    private int promotedTo;
+    // The promotion waiting for the player to choose the piece, played only once it is chosen.
+    private Move pendingPromotion;
     private final List<Integer> highlightedSquares = new ArrayList<>();
     private List<Move> legalMoves = new ArrayList<>();
     private AIPlayer AI;
     private int playMode;
+    // Set while the computer searches its move on its own thread.
+    private boolean computerThinking;
 
     public GameController(Game game, GameUI gameUI, int playMode) {
         this.game = game;
         this.gameUI = gameUI;
         this.playMode = playMode;
         mh = new MovementHandler(game);
-        AI = new AIPlayer(game, mh);
+        AI = new AIPlayer(game);
     }
 
     /**
@@ -37,8 +40,10 @@ public class GameController {
      * @param targetedSquare the index of the square of the virtual board
      */
     public void actionHandler(int targetedSquare) {
-        Square clickedSquare = game.getBoard()[targetedSquare];
-        int pieceColor = Piece.pieceColor(clickedSquare.getPiece());
+        if (computerThinking) {
+            return;
+        }
+        int pieceColor = Piece.pieceColor(game.getPosition().getPiece(targetedSquare));
         if (pieceToMove == null) {
             if (pieceColor == game.sideToMove) {
                 selectPiece(targetedSquare);
@@ -62,41 +67,67 @@ public class GameController {
     }
 
     public void executeMove(Move wantedMove) {
-        game.executeMove(wantedMove);
         if (wantedMove.isPromotionMove) {
+            // The four promotions share their squares, the move is known once the piece is.
+            pendingPromotion = wantedMove;
             gameUI.displayPromotionOptions(pieceToMove);
-            // Save the position of the pawn that has to be converted in a promoted piece.
-            promotedPawnIndex = wantedMove.targetSquareIndex;
-            // Set the color of the piece;
-            promotedTo = Piece.pieceColor(pieceToMove.getPiece()) << 3;
         } else {
-            generateLegalMoves();
-            if (isCheckMate()) {
-                if (game.sideToMove == Color.white) {
-                    System.out.println("BLACK HAS WOOOON");
-                } else {
-                    System.out.println("WHITE HAS WOOOON");
-                }
-            }
-            else if(playMode == PlayMode.vsComputer) {
-                Move AIMove = AI.doRandomMove();
-                game.executeMove(AIMove);
-                generateLegalMoves();
-                if (isCheckMate()) {
-                    if (game.sideToMove == Color.white) {
-                        System.out.println("BLACK HAS WOOOON");
-                    } else {
-                        System.out.println("WHITE HAS WOOOON");
+            game.executeMove(wantedMove);
+            onPlayerMove();
+        }
+    }
+
+    /**
+     * Shows the move of the player, then lets the computer answer it.
+     */
+    private void onPlayerMove() {
+        generateLegalMoves();
+        gameUI.drawPiecesOnBoard(game.getPosition());
+        if (isCheckMate()) {
+            announceWinner();
+        }
+        else if (playMode == PlayMode.vsComputer) {
+            playComputerMove();
+        }
+    }
+
+    /**
+     * Searches the move of the computer on its own thread, so the UI stays responsive. Until the
+     * move is played, the game belongs to the search and the clicks on the board are ignored.
+     */
+    private void playComputerMove() {
+        computerThinking = true;
+        AI.findBestMoveInBackground(new AIPlayer.MoveListener() {
+            @Override
+            public void onMoveFound(final Move move) {
+                gameUI.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        computerThinking = false;
+                        if (move != null) {
+                            game.executeMove(move);
+                        }
+                        generateLegalMoves();
+                        gameUI.drawPiecesOnBoard(game.getPosition());
+                        if (isCheckMate()) {
+                            announceWinner();
+                        }
                     }
-                }
+                });
             }
-        }
-        gameUI.drawPiecesOnBoard(game.getBoard());
+        });
+    }
 
+    private void announceWinner() {
+        if (game.sideToMove == Color.white) {
+            System.out.println("BLACK HAS WOOOON");
+        } else {
+            System.out.println("WHITE HAS WOOOON");
+        }
     }
 
     public void selectPiece(int squareIndex) {
-        pieceToMove = new Square(game.getBoard()[squareIndex]);
+        pieceToMove = new Square(squareIndex, game.getPosition().getPiece(squareIndex));
         for (Move move : legalMoves) {
             if (pieceToMove.getPosition() == move.initialSquareIndex) {
                 highlightedSquares.add(move.targetSquareIndex);
@@ -112,39 +143,33 @@ public class GameController {
     }
 
     public void undo(int undoDepth) {
+        if (computerThinking) {
+            return;
+        }
         endAction();
         game.undo(undoDepth);
-        gameUI.drawPiecesOnBoard(game.getBoard());
+        gameUI.drawPiecesOnBoard(game.getPosition());
         generateLegalMoves();
     }
 
+    /**
+     * Plays the pending promotion, to the chosen piece.
+     *
+     * @param promotionPiece the type of the piece, see Piece
+     */
     public void doPromotion(int promotionPiece) {
-        // The color is now, now we set the promotion piece.
-        promotedTo += promotionPiece;
-        game.promotePawn(promotedPawnIndex, promotedTo);
-        generateLegalMoves();
-        if (isCheckMate()) {
-            System.out.println("The game is oveeeer");
-            if (game.getSideToMove() == Color.white) {
-                System.out.println("BLACK HAS WOOOON");
-            } else {
-                System.out.println("WHITE HAS WOOOON");
-            }
-        }
-        else if(playMode == PlayMode.vsComputer){
-            Move AIMove = AI.doRandomMove();
-            game.executeMove(AIMove);
-            generateLegalMoves();
-            if (isCheckMate()) {
-                if (game.sideToMove == Color.white) {
-                    System.out.println("BLACK HAS WOOOON");
-                } else {
-                    System.out.println("WHITE HAS WOOOON");
-                }
-            }
-        }
+        game.executeMove(getPromotionMove(pendingPromotion, promotionPiece));
+        pendingPromotion = null;
+        gameUI.removePromotionOptions();
+        onPlayerMove();
+    }
+
+    /**
+     * Gives up the pending promotion, the pawn stays where it was.
+     */
+    public void cancelPromotion() {
+        pendingPromotion = null;
         gameUI.removePromotionOptions();
-        gameUI.drawPiecesOnBoard(game.getBoard());
     }
 
     /**
@@ -168,6 +193,18 @@ public class GameController {
         return null;
     }
 
+    /**
+     * @return the legal promotion with the squares of the move, to the piece of the type
+     */
+    private Move getPromotionMove(Move promotion, int promotionPiece) {
+        for (Move m : legalMoves) {
+            if (m.equals(promotion) && PackedMove.getPromotionType(m.packedMove) == promotionPiece) {
+                return m;
+            }
+        }
+        return null;
+    }
+
     /**
      * This method will rotate the board 180 degrees. The players color is kept. This allows
      * the player to play from any side(top or bottom). The state of the game is preserved.
@@ -188,7 +225,7 @@ public class GameController {
         gameUI.reverseViewOrder();
 
         gameUI.undoHighlight(highlightedSquares);
-        gameUI.drawPiecesOnBoard(game.getBoard());
+        gameUI.drawPiecesOnBoard(game.getPosition());
         if (pieceToMove != null) {
             // Since the map was rotated, reselect the piece that was selected prior to
             // the rotation.
@@ -200,6 +237,6 @@ public class GameController {
         game.loadGameStateFromFen();
         generateLegalMoves();
         gameUI.colorBoard();
-        gameUI.drawPiecesOnBoard(game.getBoard());
+        gameUI.drawPiecesOnBoard(game.getPosition());
     }
 }
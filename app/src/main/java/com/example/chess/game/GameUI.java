@@ -1,6 +1,8 @@
 package com.example.chess.game;
 
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.widget.LinearLayout;
 
@@ -22,6 +24,7 @@ public class GameUI {
     private final LinearLayout promotionLayout;
     private ColorTheme colorTheme;
     private Map<Integer, Drawable> pieces;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
 
     /**
      * @param boardSquares the list of the views displayed on the screen
@@ -49,6 +52,13 @@ public class GameUI {
         }
     }
 
+    /**
+     * Runs the action on the UI thread, the only one allowed to touch the views.
+     */
+    public void runOnUiThread(Runnable action) {
+        uiHandler.post(action);
+    }
+
     public void removePromotionOptions() {
         promotionLayout.setVisibility(View.GONE);
     }
@@ -71,11 +81,11 @@ public class GameUI {
     /**
      * This method will load the assets of the pieces on the squares, after the positions were set.
      *
-     * @param boardData a list that contains the piece-codes for each square
+     * @param position the position that holds the piece-codes for each square
      */
-    public void drawPiecesOnBoard(Square[] boardData) {
-        for (int index = 0; index < boardData.length; index++) {
-            boardSquares[index].setImageDrawable(pieces.get(boardData[index].getPiece()));
+    public void drawPiecesOnBoard(Position position) {
+        for (int index = 0; index < boardSquares.length; index++) {
+            boardSquares[index].setImageDrawable(pieces.get(position.getPiece(index)));
         }
     }
 
@@ -0,0 +1,173 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * The exact result of every king and pawn against king position, one bit per position: set if
+ * the side with the pawn wins, clear if it is a draw. The table is computed when the class is
+ * loaded, by retrograde analysis:
+ * - the positions where the pawn promotes safely are won, the ones where the lone king is
+ * stalemated or takes the pawn are drawn;
+ * - then, until nothing changes anymore, a position with the pawn side to move is won if one of
+ * its moves leads to a won position, and a position with the lone king to move is drawn if one of
+ * its moves leads to a drawn position. A position is decided once all of its moves lead to
+ * decided positions;
+ * - the positions left undecided are drawn.
+ * The table is computed for a white pawn on the files a to d only, the other positions are
+ * mirrored to these ones. It takes 24 KB.
+ * Computing the table takes a noticeable time on a slow device, and the search can't be stopped
+ * while it runs, so it should be computed with init before the searches start.
+ */
+public class KpkBitbase {
+
+    // The squares of the pawn: files a to d, ranks 2 to 7.
+    private static final int pawnSquares = 24;
+    private static final int size = 64 * 64 * 2 * pawnSquares;
+
+    private static final int invalid = 0;
+    private static final int unknown = 1;
+    private static final int draw = 2;
+    private static final int win = 4;
+
+    private static final long[] wins = new long[size / 64];
+
+    static {
+        computeTable();
+    }
+
+    private KpkBitbase() {
+    }
+
+    /**
+     * Computes the table, if it isn't computed yet: loading the class is enough.
+     */
+    public static void init() {
+    }
+
+    /**
+     * @param strongSide the color of the side with the pawn
+     * @return true if the side with the pawn wins with perfect play
+     */
+    public static boolean isWin(Position position, int strongSide, int sideToMove) {
+        int strongKing = position.getKingSquare(strongSide);
+        int weakKing = position.getKingSquare(Color.oppositeColor(strongSide));
+        int pawn = Long.numberOfTrailingZeros(position.getPieces(strongSide, Piece.pawn));
+        // The table is seen from white, with the pawn on the queen side.
+        if (strongSide == Color.black) {
+            strongKing ^= 56;
+            weakKing ^= 56;
+            pawn ^= 56;
+        }
+        if ((pawn & 7) >= 4) {
+            strongKing ^= 7;
+            weakKing ^= 7;
+            pawn ^= 7;
+        }
+        int index = index(sideToMove == strongSide, strongKing, weakKing, pawn);
+        return (wins[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int index(boolean whiteToMove, int whiteKing, int blackKing, int pawn) {
+        int pawnIndex = (pawn & 7) + ((pawn >> 3) - 1) * 4;
+        return whiteKing | (blackKing << 6) | ((whiteToMove ? 0 : 1) << 12) | (pawnIndex << 13);
+    }
+
+    private static void computeTable() {
+        byte[] results = new byte[size];
+        for (int pawnIndex = 0; pawnIndex < pawnSquares; pawnIndex++) {
+            int pawn = (pawnIndex & 3) + ((pawnIndex >> 2) + 1) * 8;
+            for (int whiteKing = 0; whiteKing < 64; whiteKing++) {
+                for (int blackKing = 0; blackKing < 64; blackKing++) {
+                    results[index(true, whiteKing, blackKing, pawn)] = (byte) classify(true, whiteKing, blackKing, pawn);
+                    results[index(false, whiteKing, blackKing, pawn)] = (byte) classify(false, whiteKing, blackKing, pawn);
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int index = 0; index < size; index++) {
+                if (results[index] == unknown) {
+                    int result = solve(results, index);
+                    if (result != unknown) {
+                        results[index] = (byte) result;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        for (int index = 0; index < size; index++) {
+            if (results[index] == win) {
+                wins[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    /**
+     * @return the result of the position that doesn't depend on any other one, or unknown
+     */
+    private static int classify(boolean whiteToMove, int whiteKing, int blackKing, int pawn) {
+        if (PrecomputedData.squareDistance[whiteKing][blackKing] <= 1 || whiteKing == pawn || blackKing == pawn) {
+            return invalid;
+        }
+        long pawnAttacks = PrecomputedData.pawnAttackMasks[Color.white][pawn];
+        if (whiteToMove && (pawnAttacks & (1L << blackKing)) != 0) {
+            return invalid;
+        }
+        int promotionSquare = pawn + 8;
+        // The pawn promotes and the new queen can't be taken.
+        if (whiteToMove && (pawn >> 3) == 6 && whiteKing != promotionSquare && blackKing != promotionSquare &&
+                (PrecomputedData.squareDistance[blackKing][promotionSquare] > 1 || PrecomputedData.squareDistance[whiteKing][promotionSquare] == 1)) {
+            return win;
+        }
+        if (!whiteToMove) {
+            long blackMoves = PrecomputedData.kingAttackMasks[blackKing] &
+                    ~(PrecomputedData.kingAttackMasks[whiteKing] | pawnAttacks);
+            if (blackMoves == 0) {
+                return draw;
+            }
+            if ((blackMoves & (1L << pawn)) != 0) {
+                return draw;
+            }
+        }
+        return unknown;
+    }
+
+    /**
+     * @return the result of the position given the results of the positions its moves lead to,
+     * unknown if they are not all known yet
+     */
+    private static int solve(byte[] results, int index) {
+        int whiteKing = index & 63;
+        int blackKing = (index >> 6) & 63;
+        boolean whiteToMove = ((index >> 12) & 1) == 0;
+        int pawnIndex = index >> 13;
+        int pawn = (pawnIndex & 3) + ((pawnIndex >> 2) + 1) * 8;
+
+        int found = invalid;
+        if (whiteToMove) {
+            long moves = PrecomputedData.kingAttackMasks[whiteKing];
+            while (moves != 0) {
+                int square = Long.numberOfTrailingZeros(moves);
+                moves &= moves - 1;
+                found |= results[index(false, square, blackKing, pawn)];
+            }
+            // A pawn on the 7th rank that promotes is already classified.
+            if ((pawn >> 3) < 6) {
+                found |= results[index(false, whiteKing, blackKing, pawn + 8)];
+            }
+            if ((pawn >> 3) == 1 && pawn + 8 != whiteKing && pawn + 8 != blackKing) {
+                found |= results[index(false, whiteKing, blackKing, pawn + 16)];
+            }
+            return (found & win) != 0 ? win : (found & unknown) != 0 ? unknown : draw;
+        }
+        long moves = PrecomputedData.kingAttackMasks[blackKing];
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            found |= results[index(true, whiteKing, square, pawn)];
+        }
+        return (found & draw) != 0 ? draw : (found & unknown) != 0 ? unknown : win;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.chess.game;
+
+/**
+ * Precomputed attack tables for the sliding pieces (rooks, bishops and queens), indexed with
+ * magic bitboards.
+ * For every square, the attacks of a slider only depend on the pieces standing on its rays
+ * (the squares on the edge of the board do not matter, since the slider stops there anyway).
+ * These relevant squares are kept in a mask. Multiplying the relevant occupancy by a magic
+ * number packs the occupancy bits in the top bits of the product, which are then used as an
+ * index in the table that holds the attacks of the slider for that occupancy. Thus, the
+ * attacks of any slider come from one multiplication, one shift and one table lookup.
+ * The tables are built once, when the class is loaded, and are shared by everyone.
+ */
+public class MagicBitboards {
+
+    public static final long[] rookMasks = new long[64];
+    public static final long[] bishopMasks = new long[64];
+
+    private static final int[] rookShifts = new int[64];
+    private static final int[] bishopShifts = new int[64];
+    private static final long[][] rookAttackTable = new long[64][];
+    private static final long[][] bishopAttackTable = new long[64][];
+
+    // Rook moves along the ranks and files, bishop moves along the diagonals. Each direction is
+    // given as {rank offset, file offset}.
+    private static final int[][] rookDirections = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] bishopDirections = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    /*
+    The magic numbers were found by a trial and error search over sparse random numbers: a number
+    is magic for a square if no two occupancies that give different attacks are sent to the
+    same index.
+     */
+    private static final long[] rookMagics = {
+        0x00800080221A4000L, 0x2040002000401000L, 0xA900090010422000L,
+        0x0200041140200A00L, 0x1001008040200810L, 0x0200100200080401L,
+        0x0280108002000100L, 0x0200041500802242L, 0x200A002080420100L,
+        0x400C808040002000L, 0x0216801001200080L, 0x8201001000082100L,
+        0x2C40800800800400L, 0x0060808002000400L, 0x9021800100800200L,
+        0x6601000040810002L, 0x2080004020004001L, 0x1010024000402009L,
+        0x2000808020001000L, 0x0026020040201208L, 0x5004008004080081L,
+        0x0100808004000200L, 0x0000040002100801L, 0x4800020010440389L,
+        0x6200400080008020L, 0x00A0008280400220L, 0x0040120200208040L,
+        0x1288002101001000L, 0x0800080080040080L, 0x32802008010410C0L,
+        0x4202020400100801L, 0x80C00042000C00A1L, 0x4080004081002100L,
+        0x2800804000802001L, 0x0040100080802000L, 0x0201000821001002L,
+        0x0008001009000500L, 0x400A001492006810L, 0x0012508804000142L,
+        0x8021000045000882L, 0x2000204000908002L, 0x0240100028006000L,
+        0x2880110020010040L, 0x0001021002210008L, 0x0008020004004040L,
+        0x0009000804010002L, 0x0014020001008080L, 0x9004304401820005L,
+        0x0000220100408200L, 0x0050401008200040L, 0x0201801000200480L,
+        0x6485022008100100L, 0x1008440008008280L, 0x0009000400080300L,
+        0x0020080110020400L, 0x8440802100004080L, 0x0000210046128001L,
+        0x10010240002A1081L, 0x0C81114008200501L, 0x004100281000A015L,
+        0x0032002008041002L, 0x3206000130082422L, 0x000C101801122084L,
+        0x0008084030840102L
+    };
+
+    private static final long[] bishopMagics = {
+        0x0820200080810049L, 0x0222040804A90040L, 0x1010042048400060L,
+        0x0044040088828020L, 0xA008484140300880L, 0x0002226020020080L,
+        0x0021011003A00484L, 0x0100442084202001L, 0x8046425848009880L,
+        0x0143021001120098L, 0x0000220204082000L, 0x2A80944400808880L,
+        0x0002811040400308L, 0x0040011048040108L, 0x0300410802110438L,
+        0x0200820504024200L, 0x0840881022080120L, 0x00020C7104080481L,
+        0x004400020802010CL, 0x8018009028401000L, 0x0486000400A2000CL,
+        0x2000200D00884002L, 0x0004000212020280L, 0x8000808030880801L,
+        0x5810880850200161L, 0x0030C80350210108L, 0x0206A40088254400L,
+        0xB284004004010102L, 0x1006840008802000L, 0x1C30010008825102L,
+        0x0084840001015800L, 0x0200410004440200L, 0x0210101308240C21L,
+        0x0040823000206402L, 0x2084040400020020L, 0x6801040401080120L,
+        0x1240010100111040L, 0x4800880040020111L, 0x0808020440048800L,
+        0x0001404200048200L, 0x2804100410040400L, 0x0001308820000400L,
+        0x90041042280D1002L, 0x1020820214010200L, 0x5600204410100102L,
+        0x0040008A04100080L, 0x8021010208840208L, 0x8230011040800101L,
+        0x40248C3008050200L, 0x2001010090042821L, 0x000080210808080CL,
+        0x201820B041108000L, 0x204C141082020004L, 0x0880850810244000L,
+        0x004084C408861340L, 0x0811010104008000L, 0x2081120811041000L,
+        0x808C020200840504L, 0x0085210021080805L, 0x0090000200840402L,
+        0x0000800040104128L, 0x0000A08450220201L, 0x000041680804A292L,
+        0x0002022812108200L
+    };
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            rookMasks[square] = computeSlidingAttacks(square, 0, rookDirections, true);
+            rookShifts[square] = 64 - Long.bitCount(rookMasks[square]);
+            rookAttackTable[square] = computeAttackTable(square, rookMasks[square],
+                    rookMagics[square], rookShifts[square], rookDirections);
+
+            bishopMasks[square] = computeSlidingAttacks(square, 0, bishopDirections, true);
+            bishopShifts[square] = 64 - Long.bitCount(bishopMasks[square]);
+            bishopAttackTable[square] = computeAttackTable(square, bishopMasks[square],
+                    bishopMagics[square], bishopShifts[square], bishopDirections);
+        }
+    }
+
+    private MagicBitboards() {
+    }
+
+    /**
+     * @param square   the square of the rook
+     * @param occupied the occupancy of the whole board
+     * @return the squares attacked by a rook, including the first piece met on every ray
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return rookAttackTable[square][(int) (((occupied & rookMasks[square]) * rookMagics[square]) >>> rookShifts[square])];
+    }
+
+    /**
+     * @param square   the square of the bishop
+     * @param occupied the occupancy of the whole board
+     * @return the squares attacked by a bishop, including the first piece met on every ray
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return bishopAttackTable[square][(int) (((occupied & bishopMasks[square]) * bishopMagics[square]) >>> bishopShifts[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Fills the attack table of a square by going through every subset of the relevant
+     * occupancy mask.
+     */
+    private static long[] computeAttackTable(int square, long mask, long magic, int shift, int[][] directions) {
+        long[] table = new long[1 << (64 - shift)];
+        // Enumerate all the subsets of the mask (Carry-Rippler trick), starting from the empty one.
+        long occupancy = 0;
+        do {
+            int index = (int) ((occupancy * magic) >>> shift);
+            table[index] = computeSlidingAttacks(square, occupancy, directions, false);
+            occupancy = (occupancy - mask) & mask;
+        } while (occupancy != 0);
+        return table;
+    }
+
+    /**
+     * Walks the rays of a slider one square at a time. It is slow and it is only used to build
+     * the tables.
+     *
+     * @param onlyRelevantSquares if true, the squares on the edge of the board are left out and
+     *                            the occupancy is ignored (this gives the mask of the square)
+     */
+    private static long computeSlidingAttacks(int square, long occupied, int[][] directions, boolean onlyRelevantSquares) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int rank = (square >> 3) + direction[0];
+            int file = (square & 7) + direction[1];
+            while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                if (onlyRelevantSquares) {
+                    int nextRank = rank + direction[0];
+                    int nextFile = file + direction[1];
+                    if (nextRank < 0 || nextRank > 7 || nextFile < 0 || nextFile > 7) {
+                        break;
+                    }
+                }
+                attacks |= 1L << (rank * 8 + file);
+                if ((occupied & (1L << (rank * 8 + file))) != 0) {
+                    break;
+                }
+                rank += direction[0];
+                file += direction[1];
+            }
+        }
+        return attacks;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * Hash table of what the evaluation derives from the material alone, keyed by
+ * Position.materialKey. The material changes with the captures and the promotions only, so a
+ * search sees very few different material configurations, and each of them is looked at once.
+ * An entry keeps:
+ * - the imbalance: the bishop pair bonus, and the knights gaining and the rooks losing value as
+ * the pawns of their side come off;
+ * - the game phase;
+ * - the scale factor of the endgame score of each color, out of normalScale, lowered when the
+ * color is ahead but without the pawns or the material to win;
+ * - the EndgameEvaluator of the position if it is a known endgame, with its strong side.
+ * Like the PawnHashTable, the entries are kept in parallel arrays and every search has its own
+ * table.
+ */
+public class MaterialTable {
+
+    // The scale factor of an endgame score that is taken as it is.
+    public static final int normalScale = 64;
+
+    // The size of an entry in bytes: the key, the imbalance, the phase, the two scale factors,
+    // the strong side and the reference to the evaluator.
+    private static final int entrySize = 8 + 4 + 4 + 2 * 4 + 4 + 8;
+    private static final int bishopPairBonus = 40;
+    // Per pawn of their side above or below 5.
+    private static final int knightPawnBonus = 6;
+    private static final int rookPawnPenalty = 12;
+
+    private final long[] keys;
+    private final int[] imbalances;
+    private final int[] phases;
+    // Indexed by index * 2 + the color, minus 1.
+    private final int[] scaleFactors;
+    private final EndgameEvaluator[] endgames;
+    private final int[] strongSides;
+    private final int indexMask;
+    // The number of pieces of the position being looked at, indexed by the piece code.
+    private final int[] counts = new int[(Color.white << 3) + Piece.pawn + 1];
+
+    /**
+     * @param kilobytes the memory budget of the table. The number of entries is rounded down to a
+     *                  power of two.
+     */
+    public MaterialTable(int kilobytes) {
+        int entries = Integer.highestOneBit(Math.max(1, kilobytes * 1024 / entrySize));
+        keys = new long[entries];
+        imbalances = new int[entries];
+        phases = new int[entries];
+        scaleFactors = new int[entries * 2];
+        endgames = new EndgameEvaluator[entries];
+        strongSides = new int[entries];
+        indexMask = entries - 1;
+    }
+
+    /**
+     * Finds the entry of the material of the position, computing it first if it is not in the
+     * table. No position has the key 0 of the empty entries, there are always two kings.
+     *
+     * @return the index of the entry, to be read with the getters below
+     */
+    public int probe(Position position) {
+        long key = position.materialKey;
+        int index = (int) key & indexMask;
+        if (keys[index] != key) {
+            computeEntry(position, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the imbalance score of the entry, from the point of view of white
+     */
+    public int getImbalance(int index) {
+        return imbalances[index];
+    }
+
+    public int getPhase(int index) {
+        return phases[index];
+    }
+
+    /**
+     * @return the scale factor of the endgame score when it favors the color, out of normalScale
+     */
+    public int getScaleFactor(int index, int color) {
+        return scaleFactors[index * 2 + color - 1];
+    }
+
+    /**
+     * @return the evaluator of the known endgame of the entry, or null
+     */
+    public EndgameEvaluator getEndgame(int index) {
+        return endgames[index];
+    }
+
+    public int getStrongSide(int index) {
+        return strongSides[index];
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            endgames[i] = null;
+        }
+    }
+
+    private void computeEntry(Position position, int index) {
+        for (int piece = 0; piece < counts.length; piece++) {
+            counts[piece] = Long.bitCount(position.pieceBitboards[piece]);
+        }
+        keys[index] = position.materialKey;
+
+        endgames[index] = null;
+        for (int color = Color.black; color <= Color.white; color++) {
+            EndgameEvaluator endgame = Endgames.find(counts, color);
+            if (endgame != null) {
+                endgames[index] = endgame;
+                strongSides[index] = color;
+            }
+        }
+
+        int phase = 0;
+        int imbalance = 0;
+        for (int color = Color.black; color <= Color.white; color++) {
+            int colorIndex = color << 3;
+            int sign = color == Color.white ? 1 : -1;
+            for (int type = Piece.queen; type <= Piece.knight; type++) {
+                phase += Evaluation.phaseWeights[type] * counts[colorIndex + type];
+            }
+            int pawnsAboveFive = counts[colorIndex + Piece.pawn] - 5;
+            if (counts[colorIndex + Piece.bishop] >= 2) {
+                imbalance += sign * bishopPairBonus;
+            }
+            imbalance += sign * knightPawnBonus * pawnsAboveFive * counts[colorIndex + Piece.knight];
+            imbalance -= sign * rookPawnPenalty * pawnsAboveFive * counts[colorIndex + Piece.rook];
+        }
+        phases[index] = phase;
+        imbalances[index] = imbalance;
+
+        for (int color = Color.black; color <= Color.white; color++) {
+            scaleFactors[index * 2 + color - 1] = scaleFactor(color);
+        }
+    }
+
+    /**
+     * Without pawns, a side needs more than a minor piece of advantage to win: a lone minor piece
+     * can't mate, and a rook against a minor piece is usually a draw.
+     */
+    private int scaleFactor(int color) {
+        int otherColor = Color.oppositeColor(color);
+        if (counts[(color << 3) + Piece.pawn] > 0) {
+            return normalScale;
+        }
+        int material = nonPawnMaterial(color);
+        int otherMaterial = nonPawnMaterial(otherColor);
+        if (material - otherMaterial > Evaluation.pieceValues[Piece.bishop]) {
+            return normalScale;
+        }
+        if (material < Evaluation.pieceValues[Piece.rook]) {
+            return 0;
+        }
+        return otherMaterial <= Evaluation.pieceValues[Piece.bishop] ? 4 : 14;
+    }
+
+    private int nonPawnMaterial(int color) {
+        int material = 0;
+        for (int type = Piece.queen; type <= Piece.knight; type++) {
+            material += Evaluation.pieceValues[type] * counts[(color << 3) + type];
+        }
+        return material;
+    }
+}
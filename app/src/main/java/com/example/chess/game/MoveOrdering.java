@@ -0,0 +1,127 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * The tables a search uses to guess which moves are the best ones, so that it tries them first:
+ * - the captures are ordered by MVV-LVA, most valuable victim first and, for the same victim,
+ * least valuable attacker first;
+ * - the killer moves are the quiet moves that caused a beta cutoff at the same ply, in a sibling
+ * node. Two of them are kept per ply;
+ * - the history table scores every quiet move by its from and to squares: the moves that keep
+ * causing cutoffs anywhere in the tree get a bonus, the ones tried before them a malus;
+ * - the countermove table keeps, for the piece and the target square of the previous move, the
+ * quiet move that refuted it.
+ * The tables are plain int arrays, each search thread has its own.
+ */
+public class MoveOrdering {
+
+    // The history scores stay between -maxHistory and maxHistory.
+    private static final int maxHistory = 16384;
+
+    // The rank of every piece type by value, for MVV-LVA. Indexed by the piece type.
+    private static final int[] mvvLvaRanks = {0, 6, 5, 4, 3, 2, 1};
+
+    // Indexed by the ply, then by the slot.
+    public final int[][] killers = new int[MovementHandler.maxPly][2];
+    // Indexed by color * 4096 + the lowest 12 bits of the move, its from and to squares.
+    private final int[] history = new int[(Color.white + 1) * 64 * 64];
+    // Indexed by the piece code of the previous move * 64 + its target square.
+    private final int[] counterMoves = new int[((Color.white << 3) + Piece.pawn + 1) * 64];
+
+    public void clear() {
+        clearKillers();
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 0;
+        }
+        for (int i = 0; i < counterMoves.length; i++) {
+            counterMoves[i] = PackedMove.none;
+        }
+    }
+
+    public void clearKillers() {
+        for (int ply = 0; ply < killers.length; ply++) {
+            killers[ply][0] = PackedMove.none;
+            killers[ply][1] = PackedMove.none;
+        }
+    }
+
+    /**
+     * @return the MVV-LVA score of a capture or a promotion, the higher the better. A promotion
+     * counts as capturing the piece the pawn becomes.
+     */
+    public static int mvvLvaScore(Position position, int move) {
+        int attackerType = position.getPiece(PackedMove.getInitialSquare(move)) & 7;
+        int score = 0;
+        if (PackedMove.getFlags(move) == PackedMove.enPassantCapture) {
+            score = mvvLvaRanks[Piece.pawn] * 8;
+        }
+        else if (PackedMove.isCapture(move)) {
+            score = mvvLvaRanks[position.getPiece(PackedMove.getTargetSquare(move)) & 7] * 8;
+        }
+        if (PackedMove.isPromotion(move)) {
+            score += mvvLvaRanks[PackedMove.getPromotionType(move)] * 8;
+        }
+        return score - mvvLvaRanks[attackerType];
+    }
+
+    /**
+     * Saves a quiet move that caused a cutoff at the ply. The newest killer comes first.
+     */
+    public void addKiller(int ply, int move) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    public int getHistory(int color, int move) {
+        return history[historyIndex(color, move)];
+    }
+
+    /**
+     * Adds the bonus, or the malus if it is negative, to the history score of the move. The
+     * closer the score is to its bound, the less it changes, so that the scores keep adapting
+     * instead of growing without end.
+     */
+    public void updateHistory(int color, int move, int bonus) {
+        int index = historyIndex(color, move);
+        history[index] += bonus - history[index] * Math.abs(bonus) / maxHistory;
+    }
+
+    /**
+     * @return the bonus given for a cutoff at the depth, deeper cutoffs counting more
+     */
+    public static int historyBonus(int depth) {
+        return Math.min(depth * depth, 400);
+    }
+
+    /**
+     * @param previousMove the move that led to the position, or PackedMove.none
+     * @return the move that refuted the previous move the last time, or PackedMove.none
+     */
+    public int getCounterMove(Position position, int previousMove) {
+        if (previousMove == PackedMove.none) {
+            return PackedMove.none;
+        }
+        return counterMoves[counterMoveIndex(position, previousMove)];
+    }
+
+    public void setCounterMove(Position position, int previousMove, int move) {
+        if (previousMove != PackedMove.none) {
+            counterMoves[counterMoveIndex(position, previousMove)] = move;
+        }
+    }
+
+    private static int historyIndex(int color, int move) {
+        return (color << 12) | (move & 0xFFF);
+    }
+
+    // The piece that made the previous move stands on its target square.
+    private static int counterMoveIndex(Position position, int previousMove) {
+        int targetSquare = PackedMove.getTargetSquare(previousMove);
+        return (position.getPiece(targetSquare) << 6) | targetSquare;
+    }
+}
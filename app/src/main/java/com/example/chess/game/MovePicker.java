@@ -0,0 +1,232 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+/**
+ * Gives the moves of a node one at a time, in the order a search should try them, generating
+ * each kind of move only when the previous ones are exhausted:
+ * - the move from the transposition table, the best move found the last time the position was
+ * searched;
+ * - the captures and the promotions, by MVV-LVA;
+ * - the two killer moves of the ply, then the countermove of the previous move;
+ * - the other quiet moves, by history score.
+ * Most nodes of an alpha-beta search are cut off by one of their first moves, in which case the
+ * quiet moves, the bulk of the moves, are never generated. For the same reason the moves of a
+ * stage are not sorted up front: the best remaining one is picked each time a move is asked for.
+ * A search keeps one picker per ply and calls init at every node. The picker has its own move
+ * buffer, so the pickers of the plies above are not disturbed.
+ */
+public class MovePicker {
+
+    private static final int ttMoveStage = 0;
+    private static final int generateNoisyStage = 1;
+    private static final int noisyStage = 2;
+    private static final int firstKillerStage = 3;
+    private static final int secondKillerStage = 4;
+    private static final int counterMoveStage = 5;
+    private static final int generateQuietsStage = 6;
+    private static final int quietsStage = 7;
+    private static final int doneStage = 8;
+
+    private final MovementHandler mh;
+    private final MoveOrdering ordering;
+    private final int[] moves = new int[MovementHandler.maxMoves];
+    // The ordering score of every move of the buffer.
+    private final int[] scores = new int[MovementHandler.maxMoves];
+    private int stage;
+    // Set for the quiescence search, which only looks at the noisy moves.
+    private boolean noisyOnly;
+    private int ttMove;
+    // The quiet moves given before the quiet stage, which must not be given twice.
+    private int firstKiller;
+    private int secondKiller;
+    private int counterMove;
+    // The moves of the current stage are moves[index] to moves[end - 1].
+    private int index;
+    private int end;
+    // The first free index of the buffer.
+    private int generatedCount;
+    // The bounds of the noisy and of the quiet moves in the buffer, the start being -1 until
+    // they are generated. Either of them may be generated early to check that a move is legal.
+    private int noisyStart;
+    private int noisyEnd;
+    private int quietsStart;
+    private int quietsEnd;
+
+    public MovePicker(MovementHandler mh, MoveOrdering ordering) {
+        this.mh = mh;
+        this.ordering = ordering;
+    }
+
+    /**
+     * Prepares the picker for the current position of the game.
+     *
+     * @param ttMove the move to be tried first, or PackedMove.none. It may come from another
+     *               position with the same hash index, so it is only given if it is legal here.
+     * @param ply    the ply of the node, for the killer moves
+     */
+    public void init(int ttMove, int ply) {
+        noisyOnly = false;
+        this.ttMove = ttMove;
+        firstKiller = ordering.killers[ply][0];
+        secondKiller = ordering.killers[ply][1];
+        counterMove = ordering.getCounterMove(mh.game.position, mh.game.getLastMove());
+        stage = ttMoveStage;
+        generatedCount = 0;
+        noisyStart = -1;
+        quietsStart = -1;
+    }
+
+    /**
+     * Prepares the picker to give only the captures and the promotions of the current position,
+     * by MVV-LVA.
+     */
+    public void initNoisy() {
+        noisyOnly = true;
+        ttMove = PackedMove.none;
+        stage = generateNoisyStage;
+        generatedCount = 0;
+        noisyStart = -1;
+    }
+
+    /**
+     * @return the next move, or PackedMove.none when all the moves have been given
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case ttMoveStage:
+                    stage = generateNoisyStage;
+                    if (ttMove != PackedMove.none && isLegal(ttMove)) {
+                        return ttMove;
+                    }
+                    ttMove = PackedMove.none;
+                    break;
+                case generateNoisyStage:
+                    if (noisyStart < 0) {
+                        generateNoisy();
+                    }
+                    for (int i = noisyStart; i < noisyEnd; i++) {
+                        scores[i] = MoveOrdering.mvvLvaScore(mh.game.position, moves[i]);
+                    }
+                    index = noisyStart;
+                    end = noisyEnd;
+                    stage = noisyStage;
+                    break;
+                case noisyStage:
+                case quietsStage:
+                    while (index < end) {
+                        int move = pickBest();
+                        if (move != ttMove && (stage == noisyStage || !isSpecialQuiet(move))) {
+                            return move;
+                        }
+                    }
+                    stage = noisyOnly ? doneStage : stage + 1;
+                    break;
+                case firstKillerStage:
+                    stage = secondKillerStage;
+                    if (isUsableQuiet(firstKiller)) {
+                        return firstKiller;
+                    }
+                    firstKiller = PackedMove.none;
+                    break;
+                case secondKillerStage:
+                    stage = counterMoveStage;
+                    if (secondKiller != firstKiller && isUsableQuiet(secondKiller)) {
+                        return secondKiller;
+                    }
+                    secondKiller = PackedMove.none;
+                    break;
+                case counterMoveStage:
+                    stage = generateQuietsStage;
+                    if (counterMove != firstKiller && counterMove != secondKiller && isUsableQuiet(counterMove)) {
+                        return counterMove;
+                    }
+                    counterMove = PackedMove.none;
+                    break;
+                case generateQuietsStage:
+                    if (quietsStart < 0) {
+                        generateQuiets();
+                    }
+                    int color = mh.game.sideToMove;
+                    for (int i = quietsStart; i < quietsEnd; i++) {
+                        scores[i] = ordering.getHistory(color, moves[i]);
+                    }
+                    index = quietsStart;
+                    end = quietsEnd;
+                    stage = quietsStage;
+                    break;
+                default:
+                    return PackedMove.none;
+            }
+        }
+    }
+
+    /**
+     * Swaps the best scored move of the rest of the stage with moves[index] and gives it.
+     */
+    private int pickBest() {
+        int bestIndex = index;
+        for (int i = index + 1; i < end; i++) {
+            if (scores[i] > scores[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        int move = moves[bestIndex];
+        moves[bestIndex] = moves[index];
+        scores[bestIndex] = scores[index];
+        moves[index] = move;
+        index++;
+        return move;
+    }
+
+    private boolean isSpecialQuiet(int move) {
+        return move == firstKiller || move == secondKiller || move == counterMove;
+    }
+
+    // The killers and the countermove were found in other positions, they are only given if they
+    // are legal quiet moves here, and not the move already given first.
+    private boolean isUsableQuiet(int move) {
+        return move != PackedMove.none && move != ttMove && !PackedMove.isCapture(move) &&
+                !PackedMove.isPromotion(move) && isLegal(move);
+    }
+
+    private void generateNoisy() {
+        noisyStart = generatedCount;
+        noisyEnd = generatedCount = mh.generateNoisyMoves(moves, generatedCount);
+    }
+
+    private void generateQuiets() {
+        quietsStart = generatedCount;
+        quietsEnd = generatedCount = mh.generateMoves(moves, generatedCount, MovementHandler.quietMoves);
+    }
+
+    /**
+     * A move is legal if it is one of the moves of its kind. For that, the moves of its kind are
+     * generated before their stage, and kept for it.
+     */
+    private boolean isLegal(int move) {
+        int listStart;
+        int listEnd;
+        if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+            if (noisyStart < 0) {
+                generateNoisy();
+            }
+            listStart = noisyStart;
+            listEnd = noisyEnd;
+        }
+        else {
+            if (quietsStart < 0) {
+                generateQuiets();
+            }
+            listStart = quietsStart;
+            listEnd = quietsEnd;
+        }
+        for (int i = listStart; i < listEnd; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,8 +1,8 @@
 package com.example.chess.game;
 
 import com.example.chess.entities.Castling;
-import com.example.chess.entities.CastlingMove;
 import com.example.chess.entities.Move;
+import com.example.chess.entities.PackedMove;
 import com.example.chess.entities.Piece;
 import com.example.chess.utility.Color;
 
@@ -11,187 +11,277 @@ import java.util.List;
 
 public class MovementHandler {
 
+    // The deepest ply for which a move buffer is kept.
+    public static final int maxPly = 128;
+    // No chess position has more than 218 legal moves.
+    public static final int maxMoves = 256;
+
+    // The kinds of moves to generate, passed to generateMoves. They can be combined. The
+    // promotions that capture are captures, the pawn pushes to the last rank are promotionMoves,
+    // and everything else, castling included, is a quiet move.
+    public static final int captureMoves = 1;
+    public static final int quietMoves = 2;
+    public static final int promotionMoves = 4;
+    // The moves that change the material on the board, the only ones a quiescence search or a
+    // static exchange evaluation looks at.
+    public static final int noisyMoves = captureMoves | promotionMoves;
+    public static final int allMoves = captureMoves | quietMoves | promotionMoves;
+
+    // The first and the last rank, where the pawns get promoted.
+    private static final long promotionRanks = 0xFF000000000000FFL;
+
     Game game;
-    PrecomputedData pd;
     List<Move> legalMoves;
 
+    /*
+    The moves are generated as packed ints (see PackedMove) into one buffer per ply. A buffer is
+    allocated the first time its ply is reached and is then reused, so a search can generate the
+    moves of every node it visits without creating any object: the moves of the node at ply p are
+    written in moveBuffers[p]. Allocating on demand keeps a handler that only looks a few plies
+    ahead cheap to create.
+     */
+    public final int[][] moveBuffers = new int[maxPly][];
+    private int[] moves;
+    private int moveCount;
+
     public MovementHandler(Game game){
         this.game = game;
-        pd = new PrecomputedData();
         legalMoves = new ArrayList<>();
     }
 
-    public boolean isKingInCheck(List<Move> opponentResponse, int color) {
-        int kingPosition = game.findKingPosition(color);
-        for (Move move : opponentResponse) {
-            if (move.targetSquareIndex == kingPosition) {
-                return true;
-            }
-        }
-        return false;
+    public boolean isKingInCheck(int color) {
+        return game.position.isSquareAttacked(game.findKingPosition(color), Color.oppositeColor(color));
     }
 
+    /**
+     * Generates the legal moves of the side to move as Move objects, for the UI.
+     */
     public void generateLegalMoves() {
         legalMoves.clear();
-        List<Move> pseudoLegal = generatePseudoLegalMoves();
-        for (Move moveToCheck : pseudoLegal) {
-            game.executeMove(moveToCheck);
-            List<Move> opponentResponses = generatePseudoLegalMoves();
-            // Since we play a move in advance, now it's the other's player time to move. We need the
-            // color of the initial player for which we are generating the legal moves, thus the call
-            // of oppositeColor method.
-            if (!isKingInCheck(opponentResponses, Color.oppositeColor(game.sideToMove))) {
-                legalMoves.add(moveToCheck);
-            }
-            //
-            game.undo(1);
+        int count = generateMoves(0);
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(PackedMove.toMove(moveBuffers[0][i]));
         }
-        addCastling();
     }
 
-    public List<Move> generatePseudoLegalMoves() {
-        List<Move> pseudoLegalMoves = new ArrayList<>();
-        for (int i = 0; i < 64; i ++) {
-            int position = game.board[i].getPosition();
-            int piece = game.board[i].getPiece();
-            if (Piece.pieceColor(piece) == game.sideToMove) {
-                List<Move> moves = getPiecePseudoLegalMoves(position, piece);
-                pseudoLegalMoves.addAll(moves);
-            }
-        }
-        return pseudoLegalMoves;
-    }
     /**
-     * Generates all pseudo-legal moves for a given piece (moves that do not consider checks or pins).
+     * Generates all the legal moves of the side to move.
+     *
+     * @param ply the ply of the node, the moves are written in moveBuffers[ply]
+     * @return the number of legal moves
      */
-    public List<Move> getPiecePseudoLegalMoves(int position, int piece) {
-        List<Move> pseudoLegalMoves = new ArrayList<>();
-        if (Piece.isSlidingPiece(piece)) {
-            pseudoLegalMoves = getPseudoLegalMovesForSlidingPiece(position);
-        } else if (Piece.isPieceType(piece, Piece.knight)) {
-            pseudoLegalMoves = getPseudoLegalMovesForKnight(position);
-        } else if (Piece.isPieceType(piece, Piece.king)) {
-            pseudoLegalMoves = getPseudoLegalMovesForKing(position);
-        } else if (Piece.isPieceType(piece, Piece.pawn)) {
-            if (Piece.pieceColor(piece) == Color.black) {
-                pseudoLegalMoves = getPseudoLegalMovesForPawn(position, pd.arrBlackPawnPushes,
-                        pd.arrBlackPawnAttacks);
-            }
-            else {
-                pseudoLegalMoves = getPseudoLegalMovesForPawn(position, pd.arrWhitePawnPushes,
-                        pd.arrWhitePawnAttacks);
-            }
+    public int generateMoves(int ply) {
+        if (moveBuffers[ply] == null) {
+            moveBuffers[ply] = new int[maxMoves];
         }
-        return pseudoLegalMoves;
+        return generateMoves(moveBuffers[ply], 0, allMoves);
     }
 
     /**
-     * This method is called to compute the available moves for pieces that slide on the board
-     * i.e the rook, the bishop and the queen.
+     * Generates only the legal moves of the side to move. Instead of playing every pseudo-legal
+     * move and looking at the replies of the opponent, the pieces that give check and the pieces
+     * that are pinned to the king are computed once, and every piece is then restricted to the
+     * squares where it is allowed to go:
+     * - in double check only the king can move;
+     * - in single check the other pieces can only capture the checker or block the check;
+     * - a pinned piece can only move along the line between the king and the pinning piece.
+     * Asking for the captures or the quiet moves alone lets a search generate the moves it is most
+     * likely to need first, and the others only if it has to.
      *
-     * @param initialSquareIndex the square of the board for which we want to compute the available moves. This
-     *               variable holds the index of the board square and the piece situated on the square.
+     * @param buffer  the array the moves are written in
+     * @param start   the index of the first move in the buffer
+     * @param genType the kinds of moves to generate, e.g. noisyMoves or allMoves
+     * @return the index after the last move generated
      */
-    public List<Move> getPseudoLegalMovesForSlidingPiece(int initialSquareIndex) {
-        List<Move> pseudoLegalMoves = new ArrayList<>();
-        // Rook can walk only in the first 4 directions.
-        // Bishop can walk only in the last 4 directions.
-        // Queen is unrestricted.
-        int startDirection = Piece.isPieceType(game.board[initialSquareIndex].getPiece(), Piece.bishop) ? 4 : 0;
-        int endDirection = Piece.isPieceType(game.board[initialSquareIndex].getPiece(), Piece.rook) ? 4 : 8;
-        for (int direction = startDirection; direction < endDirection; direction++) {
-            for (int i = 0; i < pd.squaresToTheEdge[initialSquareIndex][direction]; i++) {
-                int targetSquareIndex = initialSquareIndex + PrecomputedData.directionOffset[direction] * (i + 1);
-                int targetPiece = game.board[targetSquareIndex].getPiece();
-
-                // If it encounters a friendly piece then it can't move further in this direction.
-                if (Piece.pieceColor(targetPiece) == game.sideToMove) {
-                    break;
-                }
-                pseudoLegalMoves.add(new Move(initialSquareIndex, targetSquareIndex));
-
-                // If the square had an enemy piece on it, then no other moves are available in
-                // this direction.
-                if (Piece.pieceColor(targetPiece) == Color.oppositeColor(game.sideToMove)) {
-                    break;
-                }
-            }
+    public int generateMoves(int[] buffer, int start, int genType) {
+        moves = buffer;
+        moveCount = start;
+        Position position = game.position;
+        int color = game.sideToMove;
+        int opponent = Color.oppositeColor(color);
+        int kingPosition = game.findKingPosition(color);
+        long friendlyPieces = position.getColorOccupancy(color);
+        long enemyPieces = position.getColorOccupancy(opponent);
+        long occupied = position.getOccupancy();
+        long targetSquares = 0;
+        if ((genType & captureMoves) != 0) {
+            targetSquares |= enemyPieces;
+        }
+        if ((genType & quietMoves) != 0) {
+            targetSquares |= ~occupied;
         }
-        return pseudoLegalMoves;
-    }
 
-    public List<Move> getPseudoLegalMovesForKnight(int initialSquareIndex) {
-        List<Move> pseudoLegalMoves = new ArrayList<>();
-        for (int targetIndex : pd.arrKnightAttacks.get(initialSquareIndex)) {
-            int targetPiece = game.board[targetIndex].getPiece();
-            // If the target is a friendly piece, then skip this one.
-            if (Piece.pieceColor(targetPiece) == game.sideToMove) {
-                continue;
+        long checkers = position.attackersTo(kingPosition) & enemyPieces;
+
+        // The king can go on any square that is not attacked. The king itself is removed from the
+        // board, otherwise it would hide the squares behind it from a slider that gives check.
+        long kingTargets = PrecomputedData.kingAttackMasks[kingPosition] & targetSquares;
+        while (kingTargets != 0) {
+            int targetSquareIndex = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (!position.isSquareAttacked(targetSquareIndex, opponent, occupied ^ (1L << kingPosition))) {
+                addMove(kingPosition, targetSquareIndex, enemyPieces);
             }
-            pseudoLegalMoves.add(new Move(initialSquareIndex, targetIndex));
         }
-        return pseudoLegalMoves;
-    }
 
-    public List<Move> getPseudoLegalMovesForKing(int initialSquareIndex) {
-        List<Move> pseudoLegalMoves = new ArrayList<>();
-        for (int targetIndex : pd.arrKingAttacks.get(initialSquareIndex)) {
-            int targetPiece = game.board[targetIndex].getPiece();
-            // If the target is a friendly piece, then skip this one.
-            if (Piece.pieceColor(targetPiece) == game.sideToMove) {
+        if (Long.bitCount(checkers) > 1) {
+            return moveCount;
+        }
+
+        // The squares where a piece other than the king can go: anywhere when there is no check,
+        // otherwise the square of the checker or a square between the checker and the king.
+        long checkMask = -1L;
+        if (checkers != 0) {
+            int checkerPosition = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | PrecomputedData.squaresBetween[kingPosition][checkerPosition];
+        }
+        long pinnedPieces = findPinnedPieces(kingPosition, color);
+
+        long pieces = friendlyPieces & ~position.getPieces(color, Piece.king);
+        while (pieces != 0) {
+            int initialSquareIndex = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long allowedSquares = checkMask;
+            if ((pinnedPieces & (1L << initialSquareIndex)) != 0) {
+                allowedSquares &= PrecomputedData.lineThrough[kingPosition][initialSquareIndex];
+            }
+            int piece = position.getPiece(initialSquareIndex);
+            if (Piece.isPieceType(piece, Piece.pawn)) {
+                addLegalPawnMoves(initialSquareIndex, allowedSquares, kingPosition, genType);
                 continue;
             }
-            pseudoLegalMoves.add(new Move(initialSquareIndex, targetIndex));
+            long attacks;
+            if (Piece.isPieceType(piece, Piece.knight)) {
+                attacks = PrecomputedData.knightAttackMasks[initialSquareIndex];
+            } else if (Piece.isPieceType(piece, Piece.bishop)) {
+                attacks = MagicBitboards.bishopAttacks(initialSquareIndex, occupied);
+            } else if (Piece.isPieceType(piece, Piece.rook)) {
+                attacks = MagicBitboards.rookAttacks(initialSquareIndex, occupied);
+            } else {
+                attacks = MagicBitboards.queenAttacks(initialSquareIndex, occupied);
+            }
+            long targets = attacks & targetSquares & allowedSquares;
+            while (targets != 0) {
+                addMove(initialSquareIndex, Long.numberOfTrailingZeros(targets), enemyPieces);
+                targets &= targets - 1;
+            }
         }
-        return pseudoLegalMoves;
+
+        // The king can't castle out of check.
+        if (checkers == 0 && (genType & quietMoves) != 0) {
+            addCastling();
+        }
+        return moveCount;
     }
 
-    public List<Move> getPseudoLegalMovesForPawn(int initialSquareIndex, List<List<Integer>> pawnPushes, List<List<Integer>> pawnAttacks) {
-        List<Move> pseudoLegalMoves = new ArrayList<>();
-        for (int targetIndex : pawnPushes.get(initialSquareIndex)) {
-            int targetPiece = game.board[targetIndex].getPiece();
-            // If the target is not a free space, the pawn cannot push, thus further search is futile.
-            if (targetPiece != Piece.empty) {
-                break;
-            }
-            Move move = new Move(initialSquareIndex, targetIndex);
+    /**
+     * Generates the captures, en passant included, and the promotions only. No quiet move is
+     * produced at all: the pieces only look at the squares of the enemy pieces, and the pawns
+     * only push when they reach the last rank.
+     *
+     * @return the index after the last move generated
+     */
+    public int generateNoisyMoves(int[] buffer, int start) {
+        return generateMoves(buffer, start, noisyMoves);
+    }
 
-            // Double pawn push
-            if (Math.abs(initialSquareIndex - targetIndex) == 16) {
-                move.markAsDoubleSquarePawnMove();
-            }
+    /**
+     * Adds a move of a piece other than a pawn, flagging it as a capture if the target square is
+     * occupied by an enemy piece.
+     */
+    private void addMove(int initialSquareIndex, int targetSquareIndex, long enemyPieces) {
+        int flags = (enemyPieces & (1L << targetSquareIndex)) != 0 ? PackedMove.capture : PackedMove.quiet;
+        moves[moveCount++] = PackedMove.encode(initialSquareIndex, targetSquareIndex, flags);
+    }
 
-            // Check if it is a promotion move.
-            if ((targetIndex >> 3 == 7 && game.sideToMove == Color.white) ||
-                    (targetIndex >> 3 == 0 && game.sideToMove == Color.black)) {
-                move.markAsPromotionMove();
+    private void addLegalPawnMoves(int initialSquareIndex, long allowedSquares, int kingPosition, int genType) {
+        int color = game.sideToMove;
+        long empty = ~game.position.getOccupancy();
+        // If the square in front is not free, the pawn cannot push at all.
+        long singlePush = PrecomputedData.pawnPushMasks[color][initialSquareIndex] & empty;
+        int pushType = (singlePush & promotionRanks) != 0 ? promotionMoves : quietMoves;
+        if (singlePush != 0 && (genType & pushType) != 0) {
+            if ((singlePush & allowedSquares) != 0) {
+                addPawnMove(initialSquareIndex, Long.numberOfTrailingZeros(singlePush), PackedMove.quiet);
+            }
+            long doublePush = PrecomputedData.pawnDoublePushMasks[color][initialSquareIndex] & empty & allowedSquares;
+            if (doublePush != 0) {
+                moves[moveCount++] = PackedMove.encode(initialSquareIndex, Long.numberOfTrailingZeros(doublePush),
+                        PackedMove.doublePawnPush);
             }
-            pseudoLegalMoves.add(move);
         }
-        for (int targetIndex : pawnAttacks.get(initialSquareIndex)) {
-            int targetPiece = game.board[targetIndex].getPiece();
 
-            // Check if enPassant is available for this pawn.
-            if (game.enPassant != null && game.enPassant == targetIndex) {
-                pseudoLegalMoves.add(new Move(initialSquareIndex, targetIndex));
-            }
+        if ((genType & captureMoves) == 0) {
+            return;
+        }
+        long attacks = PrecomputedData.pawnAttackMasks[color][initialSquareIndex];
+        long targets = attacks & game.position.getColorOccupancy(Color.oppositeColor(color)) & allowedSquares;
+        while (targets != 0) {
+            addPawnMove(initialSquareIndex, Long.numberOfTrailingZeros(targets), PackedMove.capture);
+            targets &= targets - 1;
+        }
 
-            // If the target is not an enemy piece, the pawn cannot attack.
-            if (Piece.pieceColor(targetPiece) != Color.oppositeColor(game.sideToMove)) {
-                continue;
-            }
+        if (game.enPassant != Game.noEnPassant && (attacks & (1L << game.enPassant)) != 0 &&
+                isEnPassantLegal(initialSquareIndex, kingPosition)) {
+            moves[moveCount++] = PackedMove.encode(initialSquareIndex, game.enPassant, PackedMove.enPassantCapture);
+        }
+    }
 
-            Move move = new Move(initialSquareIndex, targetIndex);
-            // Check if it is a promotion move.
-            if ((targetIndex >> 3 == 7 && game.sideToMove == Color.white) ||
-                    (targetIndex >> 3 == 0 && game.sideToMove == Color.black)) {
-                move.markAsPromotionMove();
-            }
-            pseudoLegalMoves.add(move);
+    /**
+     * Adds a pawn move. A pawn that reaches the last rank can be promoted to any of the 4 pieces,
+     * each of them being a different move, the queen coming first.
+     */
+    private void addPawnMove(int initialSquareIndex, int targetSquareIndex, int flags) {
+        int targetRank = targetSquareIndex >> 3;
+        if (targetRank == 7 || targetRank == 0) {
+            // The capture bit is kept, the promotion bit and piece are added.
+            moves[moveCount++] = PackedMove.encode(initialSquareIndex, targetSquareIndex, flags | PackedMove.queenPromotion);
+            moves[moveCount++] = PackedMove.encode(initialSquareIndex, targetSquareIndex, flags | PackedMove.rookPromotion);
+            moves[moveCount++] = PackedMove.encode(initialSquareIndex, targetSquareIndex, flags | PackedMove.bishopPromotion);
+            moves[moveCount++] = PackedMove.encode(initialSquareIndex, targetSquareIndex, flags | PackedMove.knightPromotion);
+        } else {
+            moves[moveCount++] = PackedMove.encode(initialSquareIndex, targetSquareIndex, flags);
         }
-        return pseudoLegalMoves;
     }
 
+    /**
+     * En passant is the only move that removes a piece from a square other than its target
+     * square. Both pawns leave the rank they stand on, which can uncover an attack on the king
+     * that the pin detection does not see, so the attackers of the king are computed directly on
+     * the resulting occupancy.
+     */
+    private boolean isEnPassantLegal(int initialSquareIndex, int kingPosition) {
+        int color = game.sideToMove;
+        int capturedPawnPosition = color == Color.white ? game.enPassant - 8 : game.enPassant + 8;
+        long capturedPawn = 1L << capturedPawnPosition;
+        long occupiedAfter = (game.position.getOccupancy() ^ (1L << initialSquareIndex) ^ capturedPawn) |
+                (1L << game.enPassant);
+        long enemyPieces = game.position.getColorOccupancy(Color.oppositeColor(color)) & ~capturedPawn;
+        return (game.position.attackersTo(kingPosition, occupiedAfter) & enemyPieces) == 0;
+    }
+
+    /**
+     * A piece is pinned if it is the only piece standing between its king and an enemy slider
+     * that moves along that line.
+     */
+    private long findPinnedPieces(int kingPosition, int color) {
+        int opponent = Color.oppositeColor(color);
+        Position position = game.position;
+        long queens = position.getPieces(opponent, Piece.queen);
+        // The enemy sliders that would attack the king if the board was empty.
+        long snipers = (MagicBitboards.rookAttacks(kingPosition, 0) & (position.getPieces(opponent, Piece.rook) | queens)) |
+                (MagicBitboards.bishopAttacks(kingPosition, 0) & (position.getPieces(opponent, Piece.bishop) | queens));
+        long pinnedPieces = 0;
+        while (snipers != 0) {
+            int sniperPosition = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = PrecomputedData.squaresBetween[kingPosition][sniperPosition] & position.getOccupancy();
+            if (Long.bitCount(blockers) == 1) {
+                pinnedPieces |= blockers & position.getColorOccupancy(color);
+            }
+        }
+        return pinnedPieces;
+    }
 
     public boolean checkWhiteKingSideCastling(int kingPosition) {
         return game.white_king_side_castling &&
@@ -219,72 +309,45 @@ public class MovementHandler {
 
     public boolean noPiecesBetweenKingAndRook(int kingPosition, int numberOfSpaces, int directionSign) {
         for (int i = 1; i <= numberOfSpaces; i++) {
-            if (game.board[kingPosition + i * directionSign].getPiece() != Piece.empty) {
+            if (game.position.getPiece(kingPosition + i * directionSign) != Piece.empty) {
                 return false;
             }
         }
         return true;
     }
     /**
-        directionSign is -1 for queen-side castling and 1 for king-side castling
+        directionSign is -1 for queen-side castling and 1 for king-side castling.
+        The king can't castle out of check, through an attacked square or into check.
      */
     public boolean isCastlingLegal(int kingPosition, int directionSign) {
+        int opponent = Color.oppositeColor(game.sideToMove);
         for (int i = 0; i <= 2; i++) {
-            game.executeMove(new Move(kingPosition, kingPosition + directionSign * i));
-            List<Move> opponentResponses = generatePseudoLegalMoves();
-            // Since we play a move in advance, now it's the other's player time to move. We need the
-            // color of the initial player for which we are generating the legal moves, thus the call
-            // of oppositeColor method.
-
-            // We need to undo the executed move. Since there is no AI involved, we only need to remove
-            // the last move done in advanced for this check.
-            int undoDepth = 1;
-
-            if (isKingInCheck(opponentResponses, Color.oppositeColor(game.sideToMove))) {
-                game.undo(undoDepth);
+            if (game.position.isSquareAttacked(kingPosition + directionSign * i, opponent)) {
                 return false;
             }
-            game.undo(undoDepth);
         }
         return true;
     }
 
     public void addCastling() {
-        CastlingMove castling;
         if (game.getSideToMove() == Color.white) {
             if (checkWhiteKingSideCastling(Castling.whiteIndex + Castling.kingInitialPosition)) {
-                castling = new CastlingMove(Castling.whiteIndex + Castling.kingInitialPosition,
-                        Castling.whiteIndex + Castling.kingPositionAfterShortCastling);
-                castling.rookInitialPosition = Castling.whiteIndex + Castling.kingSideRookInitialPosition;
-                castling.rookFinalPosition = Castling.whiteIndex + Castling.kingSideRookFinalPosition;
-                castling.markAsCastling();
-                legalMoves.add(castling);
+                moves[moveCount++] = PackedMove.encode(Castling.whiteIndex + Castling.kingInitialPosition,
+                        Castling.whiteIndex + Castling.kingPositionAfterShortCastling, PackedMove.kingSideCastling);
             }
             if (checkWhiteQueenSideCastling(Castling.whiteIndex + Castling.kingInitialPosition)) {
-                castling = new CastlingMove(Castling.whiteIndex + Castling.kingInitialPosition,
-                        Castling.whiteIndex + Castling.kingPositionAfterLongCastling);
-                castling.rookInitialPosition = Castling.whiteIndex + Castling.queenSideRookInitialPosition;
-                castling.rookFinalPosition = Castling.whiteIndex + Castling.queenSideRookFinalPosition;
-                castling.markAsCastling();
-                legalMoves.add(castling);
+                moves[moveCount++] = PackedMove.encode(Castling.whiteIndex + Castling.kingInitialPosition,
+                        Castling.whiteIndex + Castling.kingPositionAfterLongCastling, PackedMove.queenSideCastling);
             }
         }
         else {
             if (checkBlackKingSideCastling(Castling.blackIndex + Castling.kingInitialPosition)) {
-                castling = new CastlingMove(Castling.blackIndex + Castling.kingInitialPosition,
-                        Castling.blackIndex + Castling.kingPositionAfterShortCastling);
-                castling.rookInitialPosition = Castling.blackIndex + Castling.kingSideRookInitialPosition;
-                castling.rookFinalPosition = Castling.blackIndex + Castling.kingSideRookFinalPosition;
-                castling.markAsCastling();
-                legalMoves.add(castling);
+                moves[moveCount++] = PackedMove.encode(Castling.blackIndex + Castling.kingInitialPosition,
+                        Castling.blackIndex + Castling.kingPositionAfterShortCastling, PackedMove.kingSideCastling);
             }
             if (checkBlackQueenSideCastling(Castling.blackIndex + Castling.kingInitialPosition)) {
-                castling = new CastlingMove(Castling.blackIndex + Castling.kingInitialPosition,
-                        Castling.blackIndex + Castling.kingPositionAfterLongCastling);
-                castling.rookInitialPosition = Castling.blackIndex + Castling.queenSideRookInitialPosition;
-                castling.rookFinalPosition = Castling.blackIndex + Castling.queenSideRookFinalPosition;
-                castling.markAsCastling();
-                legalMoves.add(castling);
+                moves[moveCount++] = PackedMove.encode(Castling.blackIndex + Castling.kingInitialPosition,
+                        Castling.blackIndex + Castling.kingPositionAfterLongCastling, PackedMove.queenSideCastling);
             }
         }
     }
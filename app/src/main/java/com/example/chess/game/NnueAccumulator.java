@@ -0,0 +1,128 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * The hidden layer of an NnueNetwork for a position, from the point of view of each color. A
+ * hidden value is the bias of its neuron plus the weights of the inputs that are on, the pieces on
+ * their squares, so adding or removing a piece only adds or subtracts one column of weights
+ * instead of computing the whole layer again. The Position calls addPiece and removePiece for
+ * every change of the board, taking back a move included, so the accumulator is always the one
+ * of the current position.
+ * The values are int16 and the loops are plain loops over short arrays, which the JIT can
+ * vectorize by itself.
+ */
+public class NnueAccumulator {
+
+    private static final int maxScore = Endgames.knownWin - 1;
+
+    private final NnueNetwork network;
+    private final short[] whiteValues;
+    private final short[] blackValues;
+
+    public NnueAccumulator(NnueNetwork network) {
+        this.network = network;
+        whiteValues = new short[network.hiddenSize];
+        blackValues = new short[network.hiddenSize];
+        reset();
+    }
+
+    public NnueAccumulator(NnueAccumulator accumulator) {
+        network = accumulator.network;
+        whiteValues = accumulator.whiteValues.clone();
+        blackValues = accumulator.blackValues.clone();
+    }
+
+    /**
+     * Copies the values of an accumulator of the same network.
+     */
+    public void copyFrom(NnueAccumulator accumulator) {
+        System.arraycopy(accumulator.whiteValues, 0, whiteValues, 0, whiteValues.length);
+        System.arraycopy(accumulator.blackValues, 0, blackValues, 0, blackValues.length);
+    }
+
+    public NnueNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Sets the accumulator to the one of an empty board.
+     */
+    public void reset() {
+        System.arraycopy(network.featureBiases, 0, whiteValues, 0, network.hiddenSize);
+        System.arraycopy(network.featureBiases, 0, blackValues, 0, network.hiddenSize);
+    }
+
+    /**
+     * Computes the accumulator from all the pieces of the position.
+     */
+    public void refresh(Position position) {
+        reset();
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != Piece.empty) {
+                addPiece(piece, square);
+            }
+        }
+    }
+
+    public void addPiece(int piece, int square) {
+        add(whiteValues, NnueNetwork.featureIndex(Color.white, piece, square));
+        add(blackValues, NnueNetwork.featureIndex(Color.black, piece, square));
+    }
+
+    public void removePiece(int piece, int square) {
+        subtract(whiteValues, NnueNetwork.featureIndex(Color.white, piece, square));
+        subtract(blackValues, NnueNetwork.featureIndex(Color.black, piece, square));
+    }
+
+    /**
+     * @return the hidden values from the point of view of the color
+     */
+    public short[] getValues(int color) {
+        return color == Color.white ? whiteValues : blackValues;
+    }
+
+    /**
+     * @return the score of the position in centipawns, from the point of view of the side to move
+     */
+    public int evaluate(int sideToMove) {
+        short[] ownValues = getValues(sideToMove);
+        short[] otherValues = getValues(Color.oppositeColor(sideToMove));
+        byte[] weights = network.outputWeights;
+        int hiddenSize = network.hiddenSize;
+        // With int8 weights, the sum fits in an int even for the largest hidden layer.
+        int sum = 0;
+        for (int i = 0; i < hiddenSize; i++) {
+            sum += clippedRelu(ownValues[i]) * weights[i];
+        }
+        for (int i = 0; i < hiddenSize; i++) {
+            sum += clippedRelu(otherValues[i]) * weights[hiddenSize + i];
+        }
+        long score = ((long) sum + network.outputBias) * NnueNetwork.evaluationScale /
+                (NnueNetwork.hiddenScale * NnueNetwork.outputScale);
+        // Whatever the weights, the score must stay below the known wins and the mates.
+        return (int) Math.max(-maxScore, Math.min(maxScore, score));
+    }
+
+    private void add(short[] values, int feature) {
+        short[] weights = network.featureWeights;
+        int offset = feature * network.hiddenSize;
+        for (int i = 0; i < values.length; i++) {
+            values[i] += weights[offset + i];
+        }
+    }
+
+    private void subtract(short[] values, int feature) {
+        short[] weights = network.featureWeights;
+        int offset = feature * network.hiddenSize;
+        for (int i = 0; i < values.length; i++) {
+            values[i] -= weights[offset + i];
+        }
+    }
+
+    private static int clippedRelu(short value) {
+        return Math.min(Math.max(value, 0), NnueNetwork.hiddenScale);
+    }
+}
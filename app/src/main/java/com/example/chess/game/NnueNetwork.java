@@ -0,0 +1,116 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The quantized weights of an efficiently updatable neural network (NNUE) evaluating positions.
+ * The network is small:
+ * - 768 inputs, one per piece code and square, seen from each side: from the point of view of
+ * black, the board is flipped and the colors swapped;
+ * - a hidden layer of hiddenSize neurons, computed for both points of view with the same
+ * weights. These are the accumulators of NnueAccumulator, updated incrementally as the pieces
+ * are added and removed;
+ * - one output, computed from the hidden layer of the side to move followed by the one of the
+ * other side, through a clipped ReLU.
+ * The weights of the hidden layer are int16, scaled by hiddenScale, and the ones of the output
+ * are int8, scaled by outputScale, so the output bias is scaled by both.
+ * The file format is little endian:
+ * - int32 version, which must be formatVersion, then int32 hiddenSize;
+ * - int16 featureWeights[768 * hiddenSize], the weights of every input in turn;
+ * - int16 featureBiases[hiddenSize];
+ * - int8 outputWeights[2 * hiddenSize];
+ * - int32 outputBias.
+ */
+public class NnueNetwork {
+
+    public static final int formatVersion = 2;
+    public static final int inputSize = 2 * 6 * 64;
+    // The clipped ReLU keeps the hidden values between 0 and hiddenScale.
+    public static final int hiddenScale = 255;
+    public static final int outputScale = 64;
+    // The output of the network times this is the score in centipawns.
+    public static final int evaluationScale = 400;
+
+    public final int hiddenSize;
+    public final short[] featureWeights;
+    public final short[] featureBiases;
+    public final byte[] outputWeights;
+    public final int outputBias;
+
+    public NnueNetwork(int hiddenSize, short[] featureWeights, short[] featureBiases, byte[] outputWeights, int outputBias) {
+        if (featureWeights.length != inputSize * hiddenSize || featureBiases.length != hiddenSize ||
+                outputWeights.length != 2 * hiddenSize) {
+            throw new IllegalArgumentException("The weights don't match a hidden layer of " + hiddenSize + " neurons");
+        }
+        this.hiddenSize = hiddenSize;
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Reads a network in the format described above. The stream is not closed.
+     */
+    public static NnueNetwork load(InputStream stream) throws IOException {
+        InputStream input = new BufferedInputStream(stream);
+        int version = readInt(input);
+        if (version != formatVersion) {
+            throw new IOException("Unknown network format version " + version);
+        }
+        int hiddenSize = readInt(input);
+        if (hiddenSize <= 0 || hiddenSize > 4096) {
+            throw new IOException("Invalid hidden layer size " + hiddenSize);
+        }
+        short[] featureWeights = readShorts(input, inputSize * hiddenSize);
+        short[] featureBiases = readShorts(input, hiddenSize);
+        byte[] outputWeights = readBytes(input, 2 * hiddenSize);
+        int outputBias = readInt(input);
+        return new NnueNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias);
+    }
+
+    /**
+     * @param perspective the color from whose point of view the board is seen
+     * @return the index of the input of the piece on the square
+     */
+    public static int featureIndex(int perspective, int piece, int square) {
+        int type = (piece & 7) - Piece.king;
+        if (perspective == Color.white) {
+            return ((Piece.pieceColor(piece) == Color.white ? 0 : 6) + type) * 64 + square;
+        }
+        return ((Piece.pieceColor(piece) == Color.black ? 0 : 6) + type) * 64 + (square ^ 56);
+    }
+
+    private static int readByte(InputStream input) throws IOException {
+        int value = input.read();
+        if (value < 0) {
+            throw new IOException("The network file is truncated");
+        }
+        return value;
+    }
+
+    private static int readInt(InputStream input) throws IOException {
+        return readByte(input) | (readByte(input) << 8) | (readByte(input) << 16) | (readByte(input) << 24);
+    }
+
+    private static byte[] readBytes(InputStream input, int count) throws IOException {
+        byte[] values = new byte[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (byte) readByte(input);
+        }
+        return values;
+    }
+
+    private static short[] readShorts(InputStream input, int count) throws IOException {
+        short[] values = new short[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (short) (readByte(input) | (readByte(input) << 8));
+        }
+        return values;
+    }
+}
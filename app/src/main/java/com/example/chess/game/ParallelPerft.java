@@ -0,0 +1,139 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft spread over several cores. The tree is split at the root, and optionally at the next
+ * plies too: every move of a split node becomes a fork/join task that works on its own copy of
+ * the game, so no state is shared between the threads. Below the split plies every task runs
+ * the single-threaded Perft. The tasks may share a PerftCache, which needs no locking.
+ * It can be run from a plain JVM with the arguments: depth [threads [splitPlies [FEN]]].
+ */
+public class ParallelPerft {
+
+    private final ForkJoinPool pool;
+    private final int splitPlies;
+    private final PerftCache cache;
+
+    public ParallelPerft(int threads, int splitPlies) {
+        this(threads, splitPlies, null);
+    }
+
+    /**
+     * @param threads    the number of worker threads
+     * @param splitPlies the number of plies, starting from the root, at which the tree is split
+     *                   into tasks. One is enough for deep counts; more plies give a better load
+     *                   balance for shallow ones, at the cost of copying more games.
+     * @param cache      the cache shared by all the tasks, or null
+     */
+    public ParallelPerft(int threads, int splitPlies, PerftCache cache) {
+        pool = new ForkJoinPool(threads);
+        this.splitPlies = Math.max(1, splitPlies);
+        this.cache = cache;
+    }
+
+    public long perft(Game game, int depth) {
+        if (depth <= 1) {
+            return new Perft(new Game(game), cache).perft(depth);
+        }
+        return pool.invoke(new PerftTask(new Game(game), depth, splitPlies, cache));
+    }
+
+    /**
+     * @return the number of leaf nodes below every legal move, the moves being in coordinate
+     * notation
+     */
+    public Map<String, Long> divide(Game game, int depth) {
+        Game root = new Game(game);
+        MovementHandler mh = new MovementHandler(root);
+        int moveCount = mh.generateMoves(0);
+        List<PerftTask> tasks = new ArrayList<>();
+        for (int i = 0; i < moveCount; i++) {
+            Game child = new Game(root);
+            child.makeMove(mh.moveBuffers[0][i]);
+            tasks.add(new PerftTask(child, depth - 1, splitPlies - 1, cache));
+        }
+        for (PerftTask task : tasks) {
+            pool.execute(task);
+        }
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < moveCount; i++) {
+            counts.put(PackedMove.toUci(mh.moveBuffers[0][i]), tasks.get(i).join());
+        }
+        return counts;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static class PerftTask extends RecursiveTask<Long> {
+
+        // RecursiveTask is Serializable, but the tasks never are serialized.
+        private static final long serialVersionUID = 1L;
+
+        private final Game game;
+        private final int depth;
+        private final int splitPlies;
+        private final PerftCache cache;
+
+        PerftTask(Game game, int depth, int splitPlies, PerftCache cache) {
+            this.game = game;
+            this.depth = depth;
+            this.splitPlies = splitPlies;
+            this.cache = cache;
+        }
+
+        @Override
+        protected Long compute() {
+            // Splitting close to the leaves costs more than it gains.
+            if (splitPlies <= 0 || depth <= 2) {
+                return new Perft(game, cache).perft(depth);
+            }
+            MovementHandler mh = new MovementHandler(game);
+            int moveCount = mh.generateMoves(0);
+            List<PerftTask> tasks = new ArrayList<>(moveCount);
+            for (int i = 0; i < moveCount; i++) {
+                Game child = new Game(game);
+                child.makeMove(mh.moveBuffers[0][i]);
+                tasks.add(new PerftTask(child, depth - 1, splitPlies - 1, cache));
+            }
+            invokeAll(tasks);
+            long nodes = 0;
+            for (PerftTask task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int splitPlies = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        String fen = Perft.initialPosition;
+        if (args.length > 3) {
+            StringBuilder fenBuilder = new StringBuilder();
+            for (int i = 3; i < args.length; i++) {
+                fenBuilder.append(args[i]).append(" ");
+            }
+            fen = fenBuilder.toString().trim();
+        }
+
+        ParallelPerft parallelPerft = new ParallelPerft(threads, splitPlies);
+        long start = System.nanoTime();
+        long nodes = parallelPerft.perft(Perft.loadGame(fen), depth);
+        long elapsedNanoseconds = System.nanoTime() - start;
+        parallelPerft.shutdown();
+        long nodesPerSecond = elapsedNanoseconds > 0 ? nodes * 1000000000L / elapsedNanoseconds : 0;
+        System.out.println("depth " + depth + ", " + threads + " threads: " + nodes + " nodes, " +
+                elapsedNanoseconds / 1000000 + " ms, " + nodesPerSecond + " nodes/s");
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.chess.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Lazy SMP: the search of a move on several cores. The main search runs on the calling thread,
+ * and every helper thread runs an ordinary search of its own copy of the game. Nothing is shared
+ * but the transposition table, through which the helpers pass on what they find: the main
+ * search keeps finding results and best moves in the table that it didn't compute itself. Half
+ * of the helpers start one ply deeper, so that they are ahead of the main search instead of
+ * searching the same nodes at the same time.
+ * The result is the one of the main search, the helpers are stopped when it is done.
+ * The helper searches are created once and kept from one move to the next, along with their
+ * history and countermove tables: only their copies of the game are brought up to date.
+ */
+public class ParallelSearch {
+
+    private final Game game;
+    private final TranspositionTable tt;
+    private final Search mainSearch;
+    private final int helperCount;
+    private final ExecutorService helperThreads;
+    private final List<Game> helperGames;
+    private final List<Search> helpers;
+
+    /**
+     * @param threads the number of threads, the calling one included
+     */
+    public ParallelSearch(Game game, TranspositionTable tt, int threads) {
+        this.game = game;
+        this.tt = tt;
+        mainSearch = new Search(game, tt);
+        helperCount = Math.max(0, threads - 1);
+        helperGames = new ArrayList<>(helperCount);
+        helpers = new ArrayList<>(helperCount);
+        for (int i = 0; i < helperCount; i++) {
+            Game helperGame = new Game(game);
+            helperGames.add(helperGame);
+            helpers.add(new Search(helperGame, tt));
+        }
+        if (helperCount > 0) {
+            helperThreads = Executors.newFixedThreadPool(helperCount, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    // The helpers must not keep the application alive.
+                    Thread thread = new Thread(runnable, "search helper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        else {
+            helperThreads = null;
+        }
+    }
+
+    /**
+     * Same as Search.findBestMove, the helper threads searching along.
+     */
+    public int findBestMove(final int maxDepth, long nodeLimit, TimeManager timeManager) {
+        tt.newSearch();
+        List<Future<?>> helperResults = new ArrayList<>(helperCount);
+        for (int i = 0; i < helperCount; i++) {
+            // The copy is made on this thread, before the main search starts moving pieces.
+            helperGames.get(i).copyFrom(game);
+            final Search helper = helpers.get(i);
+            helper.copyOptions(mainSearch);
+            helper.resetStop();
+            final int firstDepth = 1 + (i & 1);
+            helperResults.add(helperThreads.submit(new Runnable() {
+                @Override
+                public void run() {
+                    TimeManager infiniteTime = new TimeManager();
+                    infiniteTime.startInfinite();
+                    helper.findBestMove(firstDepth, maxDepth, 0, infiniteTime);
+                }
+            }));
+        }
+
+        int bestMove = mainSearch.findBestMove(maxDepth, nodeLimit, timeManager);
+
+        for (Search helper : helpers) {
+            helper.stop();
+        }
+        // The helpers are waited for, so that none of them is still running when the game is
+        // changed by the move.
+        for (Future<?> helperResult : helperResults) {
+            try {
+                helperResult.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return bestMove;
+    }
+
+    public Search getMainSearch() {
+        return mainSearch;
+    }
+
+    public void shutdown() {
+        if (helperThreads != null) {
+            helperThreads.shutdownNow();
+        }
+    }
+}
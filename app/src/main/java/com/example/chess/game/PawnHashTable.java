@@ -0,0 +1,105 @@
+package com.example.chess.game;
+
+/**
+ * Hash table of the pawn structure evaluations, keyed by Position.pawnKey. The pawns move much
+ * less often than the other pieces, so most of the positions of a search share their pawns with
+ * a position already evaluated, and the costly pawn terms of PawnStructure are computed once per
+ * pawn structure instead of once per node.
+ * An entry keeps the pawn structure score, middlegame and endgame, and the passed pawns of both
+ * colors, which the evaluation needs again for the terms that depend on the kings. The entries
+ * are kept in parallel arrays, and an entry is simply replaced by the next structure with the same
+ * index. The table is not shared between threads: every search has its own.
+ */
+public class PawnHashTable {
+
+    // The size of an entry in bytes: the key, the two scores and the two masks.
+    private static final int entrySize = 8 + 4 + 4 + 2 * 8;
+
+    private final long[] keys;
+    private final int[] middlegameScores;
+    private final int[] endgameScores;
+    // Indexed by index * 2 + the color of the pawns, minus 1.
+    private final long[] passedPawns;
+    private final int indexMask;
+    private long probes;
+    private long hits;
+
+    /**
+     * @param kilobytes the memory budget of the table. The number of entries is rounded down to a
+     *                  power of two.
+     */
+    public PawnHashTable(int kilobytes) {
+        int entries = Integer.highestOneBit(Math.max(1, kilobytes * 1024 / entrySize));
+        keys = new long[entries];
+        middlegameScores = new int[entries];
+        endgameScores = new int[entries];
+        passedPawns = new long[entries * 2];
+        indexMask = entries - 1;
+    }
+
+    /**
+     * Finds the entry of the pawns of the position, evaluating them first if they are not in the
+     * table. An empty entry has the key 0 and the scores and masks of a board without pawns, which
+     * is exactly what a board without pawns, whose key is 0, must find.
+     *
+     * @return the index of the entry, to be read with the getters below
+     */
+    public int probe(Position position) {
+        long key = position.pawnKey;
+        int index = (int) key & indexMask;
+        probes++;
+        if (keys[index] == key) {
+            hits++;
+            return index;
+        }
+        PawnStructure.evaluate(position, this, index);
+        return index;
+    }
+
+    public void store(int index, long key, int middlegameScore, int endgameScore, long whitePassedPawns, long blackPassedPawns) {
+        keys[index] = key;
+        middlegameScores[index] = middlegameScore;
+        endgameScores[index] = endgameScore;
+        passedPawns[index * 2] = blackPassedPawns;
+        passedPawns[index * 2 + 1] = whitePassedPawns;
+    }
+
+    /**
+     * @return the pawn structure score of the entry in the middlegame, from the point of view of
+     * white
+     */
+    public int getMiddlegameScore(int index) {
+        return middlegameScores[index];
+    }
+
+    public int getEndgameScore(int index) {
+        return endgameScores[index];
+    }
+
+    /**
+     * @return the bitboard of the passed pawns of the color
+     */
+    public long getPassedPawns(int index, int color) {
+        return passedPawns[index * 2 + color - 1];
+    }
+
+    /**
+     * @return the share of the probes that found their entry, between 0 and 1
+     */
+    public double getHitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            middlegameScores[i] = 0;
+            endgameScores[i] = 0;
+        }
+        for (int i = 0; i < passedPawns.length; i++) {
+            passedPawns[i] = 0;
+        }
+        probes = 0;
+        hits = 0;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * The evaluation terms of the pawns. The ones that only depend on the pawns are computed by
+ * evaluate and cached in a PawnHashTable:
+ * - a doubled pawn, with another pawn of its color in front of it on its file, is penalized;
+ * - an isolated pawn, without any pawn of its color on the adjacent files, is penalized;
+ * - a backward pawn, behind all the pawns of its color on the adjacent files and whose stop square
+ * is attacked by an enemy pawn, is penalized;
+ * - a passed pawn, without any enemy pawn in front of it on its file or the adjacent files, gets
+ * a bonus growing with its rank.
+ * The terms that also depend on the kings are computed at every evaluation, from the passed pawns
+ * of the entry: the pawn shield in front of the king in the middlegame, and in the endgame the
+ * distance of the kings to the passed pawns.
+ * The scores are in centipawns, from the point of view of white.
+ */
+public class PawnStructure {
+
+    private static final int doubledMiddlegamePenalty = 10;
+    private static final int doubledEndgamePenalty = 20;
+    private static final int isolatedMiddlegamePenalty = 10;
+    private static final int isolatedEndgamePenalty = 15;
+    private static final int backwardMiddlegamePenalty = 8;
+    private static final int backwardEndgamePenalty = 10;
+    // Indexed by the rank of the passed pawn, counted from its own side.
+    private static final int[] passedMiddlegameBonus = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] passedEndgameBonus = {0, 10, 20, 35, 60, 100, 150, 0};
+    // The bonus of every pawn of the shield, on the rank in front of the king then on the next one.
+    private static final int shieldBonus = 10;
+    private static final int farShieldBonus = 5;
+    // In the endgame, per rank of the passed pawn and per square of distance to its stop square.
+    private static final int enemyKingDistanceBonus = 5;
+    private static final int ownKingDistancePenalty = 2;
+
+    // Indexed by the file.
+    private static final long[] adjacentFilesMasks = new long[8];
+    // Indexed by the color of the pawn, then by its square:
+    // - the squares in front of the pawn on its file;
+    private static final long[][] frontSpans = new long[Color.white + 1][64];
+    // - the squares in front of the pawn on its file and the adjacent files, which must be free
+    // of enemy pawns for the pawn to be passed;
+    private static final long[][] passedPawnMasks = new long[Color.white + 1][64];
+    // - the squares of the adjacent files on the rank of the pawn and behind it, from which a
+    // pawn of its color can still defend it by moving up.
+    private static final long[][] supportMasks = new long[Color.white + 1][64];
+    // Indexed by the color of the king, then by its square: the three squares in front of it, and
+    // the three squares one rank further.
+    private static final long[][] shieldMasks = new long[Color.white + 1][64];
+    private static final long[][] farShieldMasks = new long[Color.white + 1][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            long fileMask = 0x0101010101010101L << file;
+            adjacentFilesMasks[file] = (file > 0 ? fileMask >>> 1 : 0) | (file < 7 ? fileMask << 1 : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            int rank = square >> 3;
+            int file = square & 7;
+            long fileMask = 0x0101010101010101L << file;
+            long filesMask = fileMask | adjacentFilesMasks[file];
+            // The ranks above and below the square.
+            long ranksAbove = rank == 7 ? 0 : -1L << ((rank + 1) * 8);
+            long ranksBelow = (1L << (rank * 8)) - 1;
+            long rankMask = 0xFFL << (rank * 8);
+
+            frontSpans[Color.white][square] = fileMask & ranksAbove;
+            frontSpans[Color.black][square] = fileMask & ranksBelow;
+            passedPawnMasks[Color.white][square] = filesMask & ranksAbove;
+            passedPawnMasks[Color.black][square] = filesMask & ranksBelow;
+            supportMasks[Color.white][square] = adjacentFilesMasks[file] & (ranksBelow | rankMask);
+            supportMasks[Color.black][square] = adjacentFilesMasks[file] & (ranksAbove | rankMask);
+
+            shieldMasks[Color.white][square] = rank < 7 ? filesMask & (0xFFL << ((rank + 1) * 8)) : 0;
+            shieldMasks[Color.black][square] = rank > 0 ? filesMask & (0xFFL << ((rank - 1) * 8)) : 0;
+            farShieldMasks[Color.white][square] = rank < 6 ? filesMask & (0xFFL << ((rank + 2) * 8)) : 0;
+            farShieldMasks[Color.black][square] = rank > 1 ? filesMask & (0xFFL << ((rank - 2) * 8)) : 0;
+        }
+    }
+
+    private PawnStructure() {
+    }
+
+    /**
+     * Evaluates the pawns of the position and stores the result in the entry of the table.
+     */
+    public static void evaluate(Position position, PawnHashTable table, int index) {
+        int middlegameScore = 0;
+        int endgameScore = 0;
+        long whitePassedPawns = 0;
+        long blackPassedPawns = 0;
+        for (int color = Color.black; color <= Color.white; color++) {
+            int sign = color == Color.white ? 1 : -1;
+            long ownPawns = position.getPieces(color, Piece.pawn);
+            long enemyPawns = position.getPieces(Color.oppositeColor(color), Piece.pawn);
+            long pawns = ownPawns;
+            while (pawns != 0) {
+                int square = Long.numberOfTrailingZeros(pawns);
+                pawns &= pawns - 1;
+                int relativeRank = color == Color.white ? square >> 3 : 7 - (square >> 3);
+                boolean doubled = (ownPawns & frontSpans[color][square]) != 0;
+
+                if (doubled) {
+                    middlegameScore -= sign * doubledMiddlegamePenalty;
+                    endgameScore -= sign * doubledEndgamePenalty;
+                }
+                if ((ownPawns & adjacentFilesMasks[square & 7]) == 0) {
+                    middlegameScore -= sign * isolatedMiddlegamePenalty;
+                    endgameScore -= sign * isolatedEndgamePenalty;
+                }
+                else if ((ownPawns & supportMasks[color][square]) == 0) {
+                    int stopSquare = color == Color.white ? square + 8 : square - 8;
+                    if ((PrecomputedData.pawnAttackMasks[color][stopSquare] & enemyPawns) != 0) {
+                        middlegameScore -= sign * backwardMiddlegamePenalty;
+                        endgameScore -= sign * backwardEndgamePenalty;
+                    }
+                }
+                // Of two doubled passed pawns, only the front one is passed.
+                if (!doubled && (enemyPawns & passedPawnMasks[color][square]) == 0) {
+                    if (color == Color.white) {
+                        whitePassedPawns |= 1L << square;
+                    }
+                    else {
+                        blackPassedPawns |= 1L << square;
+                    }
+                    middlegameScore += sign * passedMiddlegameBonus[relativeRank];
+                    endgameScore += sign * passedEndgameBonus[relativeRank];
+                }
+            }
+        }
+        table.store(index, position.pawnKey, middlegameScore, endgameScore, whitePassedPawns, blackPassedPawns);
+    }
+
+    /**
+     * @return the squares in front of a pawn of the color on the square, on its file
+     */
+    public static long frontSpan(int color, int square) {
+        return frontSpans[color][square];
+    }
+
+    /**
+     * @return the middlegame bonus of the pawns standing in front of the king of the color, while
+     * the king is still on its first two ranks
+     */
+    public static int kingShield(Position position, int color) {
+        int kingSquare = position.getKingSquare(color);
+        int relativeRank = color == Color.white ? kingSquare >> 3 : 7 - (kingSquare >> 3);
+        if (relativeRank > 1) {
+            return 0;
+        }
+        long ownPawns = position.getPieces(color, Piece.pawn);
+        return shieldBonus * Long.bitCount(ownPawns & shieldMasks[color][kingSquare]) +
+                farShieldBonus * Long.bitCount(ownPawns & farShieldMasks[color][kingSquare]);
+    }
+
+    /**
+     * @param passedPawns the passed pawns of the color, from the PawnHashTable
+     * @return the endgame bonus of the passed pawns of the color for the distance of the kings: a
+     * passed pawn is worth more when the enemy king is far from its way and its own king is close
+     */
+    public static int passedPawnKingDistance(Position position, int color, long passedPawns) {
+        int ownKing = position.getKingSquare(color);
+        int enemyKing = position.getKingSquare(Color.oppositeColor(color));
+        int bonus = 0;
+        while (passedPawns != 0) {
+            int square = Long.numberOfTrailingZeros(passedPawns);
+            passedPawns &= passedPawns - 1;
+            int relativeRank = color == Color.white ? square >> 3 : 7 - (square >> 3);
+            int stopSquare = color == Color.white ? square + 8 : square - 8;
+            bonus += (relativeRank - 1) * (enemyKingDistanceBonus * PrecomputedData.squareDistance[enemyKing][stopSquare] -
+                    ownKingDistancePenalty * PrecomputedData.squareDistance[ownKing][stopSquare]);
+        }
+        return bonus;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Performance test of the move generation: it counts the leaf nodes of the tree of legal moves
+ * up to a given depth. The counts are known for many positions, so any difference points to a
+ * bug in the move generation or in make/unmake, and the time it takes measures their speed.
+ * It can be run from a plain JVM:
+ * - no arguments: runs all the reference positions;
+ * - depth [FEN]: counts the nodes of the position (the initial position by default);
+ * - divide depth [FEN]: also gives the count below every legal move, which helps finding the
+ * move that is generated wrongly when a count does not match.
+ * Any of them may be preceded by "hash megabytes" to cache the counts of the subtrees in a
+ * PerftCache of that size, which makes the deep counts several times faster.
+ */
+public class Perft {
+
+    public static final String initialPosition = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Well known test positions, each of them stressing different rules (castling, en passant,
+    // promotions, pins, checks).
+    public static final String[] referencePositions = {
+        initialPosition,
+        // "Kiwipete"
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+
+    // referenceCounts[i][d - 1] is the number of leaf nodes of referencePositions[i] at depth d.
+    public static final long[][] referenceCounts = {
+        {20, 400, 8902, 197281, 4865609, 119060324},
+        {48, 2039, 97862, 4085603, 193690690},
+        {14, 191, 2812, 43238, 674624, 11030083},
+        {6, 264, 9467, 422333, 15833292},
+        {44, 1486, 62379, 2103487, 89941194},
+        {46, 2079, 89890, 3894594, 164075551}
+    };
+
+    private final Game game;
+    private final MovementHandler mh;
+    private final PerftCache cache;
+
+    public Perft(Game game) {
+        this(game, null);
+    }
+
+    /**
+     * @param cache the cache of the subtree counts, or null to count every node
+     */
+    public Perft(Game game, PerftCache cache) {
+        this.game = game;
+        this.cache = cache;
+        mh = new MovementHandler(game);
+    }
+
+    public static Game loadGame(String fen) {
+        Game game = new Game(new Fen(fen));
+        game.loadGameStateFromFen();
+        return game;
+    }
+
+    /**
+     * @return the number of leaf nodes of the tree of legal moves of the given depth
+     */
+    public long perft(int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        return perft(depth, 0);
+    }
+
+    private long perft(int depth, int ply) {
+        // Bulk counted subtrees are cheaper to count again than to look up.
+        boolean useCache = cache != null && depth > 1;
+        if (useCache) {
+            long cachedNodes = cache.get(game.getZobristKey(), depth);
+            if (cachedNodes >= 0) {
+                return cachedNodes;
+            }
+        }
+        int moveCount = mh.generateMoves(ply);
+        // Bulk counting: the moves of the last ply are legal, so they are counted without being
+        // played.
+        if (depth == 1) {
+            return moveCount;
+        }
+        int[] moves = mh.moveBuffers[ply];
+        long nodes = 0;
+        for (int i = 0; i < moveCount; i++) {
+            game.makeMove(moves[i]);
+            nodes += perft(depth - 1, ply + 1);
+            game.unmakeMove();
+        }
+        if (useCache) {
+            cache.put(game.getZobristKey(), depth, nodes);
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the number of leaf nodes below every legal move, the moves being in coordinate
+     * notation
+     */
+    public Map<String, Long> divide(int depth) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        int moveCount = mh.generateMoves(0);
+        int[] moves = mh.moveBuffers[0];
+        for (int i = 0; i < moveCount; i++) {
+            int move = moves[i];
+            game.makeMove(move);
+            counts.put(PackedMove.toUci(move), depth > 1 ? perft(depth - 1, 1) : 1);
+            game.unmakeMove();
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) {
+        PerftCache cache = null;
+        int argumentIndex = 0;
+        if (args.length > 1 && args[0].equals("hash")) {
+            cache = new PerftCache(Integer.parseInt(args[1]));
+            argumentIndex = 2;
+        }
+        if (args.length == argumentIndex) {
+            runReferencePositions(cache);
+            return;
+        }
+        boolean divide = args[argumentIndex].equals("divide");
+        if (divide) {
+            argumentIndex++;
+        }
+        int depth = Integer.parseInt(args[argumentIndex]);
+        String fen = initialPosition;
+        if (args.length > argumentIndex + 1) {
+            // The FEN may be given as one argument or split on its spaces.
+            StringBuilder fenBuilder = new StringBuilder();
+            for (int i = argumentIndex + 1; i < args.length; i++) {
+                fenBuilder.append(args[i]).append(" ");
+            }
+            fen = fenBuilder.toString().trim();
+        }
+
+        Perft perft = new Perft(loadGame(fen), cache);
+        long start = System.nanoTime();
+        long nodes = 0;
+        if (divide) {
+            for (Map.Entry<String, Long> entry : perft.divide(depth).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+        }
+        else {
+            nodes = perft.perft(depth);
+        }
+        printResult(depth, nodes, System.nanoTime() - start);
+    }
+
+    private static void runReferencePositions(PerftCache cache) {
+        boolean allPassed = true;
+        for (int i = 0; i < referencePositions.length; i++) {
+            System.out.println(referencePositions[i]);
+            Perft perft = new Perft(loadGame(referencePositions[i]), cache);
+            for (int depth = 1; depth <= referenceCounts[i].length; depth++) {
+                long start = System.nanoTime();
+                long nodes = perft.perft(depth);
+                long expected = referenceCounts[i][depth - 1];
+                printResult(depth, nodes, System.nanoTime() - start);
+                if (nodes != expected) {
+                    System.out.println("  MISMATCH, expected " + expected);
+                    allPassed = false;
+                }
+            }
+        }
+        System.out.println(allPassed ? "All counts match." : "Some counts do not match.");
+    }
+
+    private static void printResult(int depth, long nodes, long elapsedNanoseconds) {
+        long elapsedMilliseconds = elapsedNanoseconds / 1000000;
+        long nodesPerSecond = elapsedNanoseconds > 0 ? nodes * 1000000000L / elapsedNanoseconds : 0;
+        System.out.println("  depth " + depth + ": " + nodes + " nodes, " + elapsedMilliseconds + " ms, " +
+                nodesPerSecond + " nodes/s");
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chess.game;
+
+/**
+ * Hash table of perft node counts, keyed by the Zobrist key of the position and the depth. The
+ * same positions are reached again and again through different move orders, and the count of a
+ * subtree only has to be computed once.
+ * The table is a single long array whose size is a power of two, so the index of a key is its
+ * lowest bits. Each entry takes two longs: the key XOR-ed with the data, then the data itself
+ * (the count in the highest 56 bits, the depth in the lowest 8). An entry is only trusted if the
+ * two halves XOR back to the key, which makes the table safe to share between threads without
+ * locking: an entry torn by two concurrent writes is simply seen as a miss.
+ * When two positions fall on the same entry, the one with the deeper subtree is kept, since it
+ * saves the most work.
+ */
+public class PerftCache {
+
+    // The two longs of an entry.
+    private static final int entrySize = 2;
+    private static final int depthBits = 8;
+    private static final long depthMask = (1L << depthBits) - 1;
+
+    private final long[] table;
+    private final int indexMask;
+
+    /**
+     * @param megabytes the memory budget of the table. The number of entries is rounded down to
+     *                  a power of two.
+     */
+    public PerftCache(int megabytes) {
+        long entries = Math.max(1, (long) megabytes * 1024 * 1024 / (entrySize * 8));
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 28));
+        table = new long[size * entrySize];
+        indexMask = size - 1;
+    }
+
+    /**
+     * @return the node count stored for the position and the depth, or -1 if there is none
+     */
+    public long get(long key, int depth) {
+        int index = ((int) key & indexMask) * entrySize;
+        long data = table[index + 1];
+        if ((table[index] ^ data) != key || (data & depthMask) != depth) {
+            return -1;
+        }
+        return data >>> depthBits;
+    }
+
+    public void put(long key, int depth, long nodes) {
+        int index = ((int) key & indexMask) * entrySize;
+        long storedData = table[index + 1];
+        // Depth-preferred replacement: a shallower subtree never evicts a deeper one.
+        if (storedData != 0 && (storedData & depthMask) > depth) {
+            return;
+        }
+        long data = (nodes << depthBits) | depth;
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * Bitboard representation of the pieces on the board. Every piece (type and color) has its own
+ * 64-bit mask in which bit i is set if such a piece stands on square i. The squares are numbered
+ * the same way as everywhere else in the game: a1 = 0, b1 = 1, ..., h8 = 63.
+ * Besides the piece masks, the position keeps an occupancy mask for each color and one for the
+ * whole board, so that move generation never has to look at the squares one by one.
+ * A plain array with the piece code of every square is kept in sync with the masks. It is the
+ * adapter used by the code that asks "what stands on this square?" (the UI, the FEN).
+ */
+public class Position {
+
+    // Indexed by the piece code, (color << 3) + type. Index 0 (Piece.empty) is never used.
+    public final long[] pieceBitboards = new long[(Color.white << 3) + Piece.pawn + 1];
+    // Indexed by the color.
+    public final long[] colorBitboards = new long[Color.white + 1];
+    public long occupied;
+    // The Zobrist key of the pieces on the board (see Zobrist). It is updated by addPiece and
+    // removePiece, so every change of the board keeps it in sync.
+    public long pieceKey;
+    // The Zobrist key of the pawns only, the key of the PawnHashTable. It changes much less
+    // often than the key of the whole position.
+    public long pawnKey;
+    // The key of the number of pieces of every kind, whatever their squares, the key of the
+    // MaterialTable (see Zobrist.computeMaterialKey).
+    public long materialKey;
+    // The sums of the middlegame and endgame values of the pieces, from the point of view of
+    // white, and the game phase (see Evaluation). They are kept in sync the same way as pieceKey.
+    public int middlegameScore;
+    public int endgameScore;
+    public int phase;
+    // The hidden layer of the neural network evaluation, or null when the network is not used
+    // (see Game.setNetwork). It is kept in sync the same way as the keys.
+    public NnueAccumulator accumulator;
+
+    private final int[] squares = new int[64];
+    // The square of the king of each color, indexed by the color. It is updated every time a
+    // king is placed on the board, so finding the king never requires a scan of the board.
+    private final int[] kingSquares = new int[Color.white + 1];
+
+    public Position() {
+    }
+
+    public Position(Position position) {
+        copyFrom(position);
+    }
+
+    /**
+     * Makes this position a copy of the other one, reusing its own arrays.
+     */
+    public void copyFrom(Position position) {
+        System.arraycopy(position.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(position.colorBitboards, 0, colorBitboards, 0, colorBitboards.length);
+        System.arraycopy(position.squares, 0, squares, 0, squares.length);
+        System.arraycopy(position.kingSquares, 0, kingSquares, 0, kingSquares.length);
+        occupied = position.occupied;
+        pieceKey = position.pieceKey;
+        pawnKey = position.pawnKey;
+        materialKey = position.materialKey;
+        middlegameScore = position.middlegameScore;
+        endgameScore = position.endgameScore;
+        phase = position.phase;
+        if (position.accumulator == null) {
+            accumulator = null;
+        }
+        else if (accumulator != null && accumulator.getNetwork() == position.accumulator.getNetwork()) {
+            accumulator.copyFrom(position.accumulator);
+        }
+        else {
+            accumulator = new NnueAccumulator(position.accumulator);
+        }
+    }
+
+    /**
+     * @param square the index of the square
+     * @return the code of the piece that stands on the square or Piece.empty
+     */
+    public int getPiece(int square) {
+        return squares[square];
+    }
+
+    public long getPieces(int color, int type) {
+        return pieceBitboards[(color << 3) + type];
+    }
+
+    public long getColorOccupancy(int color) {
+        return colorBitboards[color];
+    }
+
+    public long getOccupancy() {
+        return occupied;
+    }
+
+    /**
+     * @return the square of the king of the given color
+     */
+    public int getKingSquare(int color) {
+        return kingSquares[color];
+    }
+
+    /**
+     * Places a piece on an empty square.
+     */
+    public void addPiece(int square, int piece) {
+        long bit = 1L << square;
+        squares[square] = piece;
+        pieceBitboards[piece] |= bit;
+        materialKey ^= Zobrist.pieceKeys[piece][Long.bitCount(pieceBitboards[piece]) - 1];
+        colorBitboards[Piece.pieceColor(piece)] |= bit;
+        occupied |= bit;
+        pieceKey ^= Zobrist.pieceKeys[piece][square];
+        if ((piece & 7) == Piece.pawn) {
+            pawnKey ^= Zobrist.pieceKeys[piece][square];
+        }
+        middlegameScore += Evaluation.middlegameValues[piece][square];
+        endgameScore += Evaluation.endgameValues[piece][square];
+        phase += Evaluation.phaseWeights[piece & 7];
+        if (accumulator != null) {
+            accumulator.addPiece(piece, square);
+        }
+        if (Piece.isPieceType(piece, Piece.king)) {
+            kingSquares[Piece.pieceColor(piece)] = square;
+        }
+    }
+
+    /**
+     * Removes the piece standing on the square, if there is any.
+     *
+     * @return the code of the removed piece or Piece.empty
+     */
+    public int removePiece(int square) {
+        int piece = squares[square];
+        if (piece == Piece.empty) {
+            return Piece.empty;
+        }
+        long bit = 1L << square;
+        squares[square] = Piece.empty;
+        pieceBitboards[piece] &= ~bit;
+        materialKey ^= Zobrist.pieceKeys[piece][Long.bitCount(pieceBitboards[piece])];
+        colorBitboards[Piece.pieceColor(piece)] &= ~bit;
+        occupied &= ~bit;
+        pieceKey ^= Zobrist.pieceKeys[piece][square];
+        if ((piece & 7) == Piece.pawn) {
+            pawnKey ^= Zobrist.pieceKeys[piece][square];
+        }
+        middlegameScore -= Evaluation.middlegameValues[piece][square];
+        endgameScore -= Evaluation.endgameValues[piece][square];
+        phase -= Evaluation.phaseWeights[piece & 7];
+        if (accumulator != null) {
+            accumulator.removePiece(piece, square);
+        }
+        return piece;
+    }
+
+    /**
+     * Moves the piece from the initial square to the target square. Whatever stood on the
+     * target square is removed from the board.
+     *
+     * @return the code of the captured piece or Piece.empty
+     */
+    public int movePiece(int initialSquare, int targetSquare) {
+        int piece = removePiece(initialSquare);
+        int captured = removePiece(targetSquare);
+        addPiece(targetSquare, piece);
+        return captured;
+    }
+
+    /**
+     * Finds the pieces of both colors that attack a square. The knight, king and pawn attacks are
+     * looked up in reverse: a knight on the square would attack the same squares from which a
+     * knight attacks the square, and the same goes for the king, the sliders, and the pawns of
+     * the other color.
+     *
+     * @param square   the attacked square
+     * @param occupied the occupancy used for the slider attacks. Passing something other than
+     *                 the current occupancy allows asking what would happen if pieces were
+     *                 moved or removed.
+     * @return the bitboard of the attacking pieces
+     */
+    public long attackersTo(int square, long occupied) {
+        long rooksAndQueens = pieceBitboards[Piece.white + Piece.rook] | pieceBitboards[Piece.black + Piece.rook] |
+                pieceBitboards[Piece.white + Piece.queen] | pieceBitboards[Piece.black + Piece.queen];
+        long bishopsAndQueens = pieceBitboards[Piece.white + Piece.bishop] | pieceBitboards[Piece.black + Piece.bishop] |
+                pieceBitboards[Piece.white + Piece.queen] | pieceBitboards[Piece.black + Piece.queen];
+        return (PrecomputedData.pawnAttackMasks[Color.black][square] & pieceBitboards[Piece.white + Piece.pawn]) |
+                (PrecomputedData.pawnAttackMasks[Color.white][square] & pieceBitboards[Piece.black + Piece.pawn]) |
+                (PrecomputedData.knightAttackMasks[square] & (pieceBitboards[Piece.white + Piece.knight] | pieceBitboards[Piece.black + Piece.knight])) |
+                (PrecomputedData.kingAttackMasks[square] & (pieceBitboards[Piece.white + Piece.king] | pieceBitboards[Piece.black + Piece.king])) |
+                (MagicBitboards.rookAttacks(square, occupied) & rooksAndQueens) |
+                (MagicBitboards.bishopAttacks(square, occupied) & bishopsAndQueens);
+    }
+
+    public long attackersTo(int square) {
+        return attackersTo(square, occupied);
+    }
+
+    /**
+     * @param square  the square to be tested
+     * @param byColor the color of the attacking pieces
+     * @return true if any piece of the given color attacks the square
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        return isSquareAttacked(square, byColor, occupied);
+    }
+
+    /**
+     * Same as isSquareAttacked(square, byColor), but the slider attacks are computed for the given
+     * occupancy. The cheapest tests are done first, and it stops at the first attacker found.
+     */
+    public boolean isSquareAttacked(int square, int byColor, long occupied) {
+        int colorIndex = byColor << 3;
+        if ((PrecomputedData.pawnAttackMasks[Color.oppositeColor(byColor)][square] & pieceBitboards[colorIndex + Piece.pawn]) != 0) {
+            return true;
+        }
+        if ((PrecomputedData.knightAttackMasks[square] & pieceBitboards[colorIndex + Piece.knight]) != 0) {
+            return true;
+        }
+        if ((PrecomputedData.kingAttackMasks[square] & pieceBitboards[colorIndex + Piece.king]) != 0) {
+            return true;
+        }
+        long queens = pieceBitboards[colorIndex + Piece.queen];
+        long rooksAndQueens = pieceBitboards[colorIndex + Piece.rook] | queens;
+        if (rooksAndQueens != 0 && (MagicBitboards.rookAttacks(square, occupied) & rooksAndQueens) != 0) {
+            return true;
+        }
+        long bishopsAndQueens = pieceBitboards[colorIndex + Piece.bishop] | queens;
+        return bishopsAndQueens != 0 && (MagicBitboards.bishopAttacks(square, occupied) & bishopsAndQueens) != 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            pieceBitboards[i] = 0;
+        }
+        for (int i = 0; i < colorBitboards.length; i++) {
+            colorBitboards[i] = 0;
+        }
+        for (int i = 0; i < 64; i++) {
+            squares[i] = Piece.empty;
+        }
+        occupied = 0;
+        pieceKey = 0;
+        pawnKey = 0;
+        materialKey = 0;
+        if (accumulator != null) {
+            accumulator.reset();
+        }
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        kingSquares[Color.white] = 0;
+        kingSquares[Color.black] = 0;
+    }
+}
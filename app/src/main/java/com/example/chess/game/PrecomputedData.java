@@ -1,209 +1,103 @@
 package com.example.chess.game;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.example.chess.utility.Color;
 
+/**
+ * Lookup tables used by the move generation and the evaluation. All of them are primitive
+ * arrays built once, when the class is loaded, and never modified afterwards, so they are shared
+ * by every MovementHandler and every thread.
+ */
 public class PrecomputedData {
 
-    public int[][] squaresToTheEdge = new int[64][8];
-    public List<List<Integer>> arrKnightAttacks = new ArrayList<>();
-    public List<List<Integer>> arrKingAttacks = new ArrayList<>();
-    public List<List<Integer>> arrBlackPawnAttacks = new ArrayList<>();
-    public List<List<Integer>> arrWhitePawnAttacks = new ArrayList<>();
-    public List<List<Integer>> arrWhitePawnPushes = new ArrayList<>();
-    public List<List<Integer>> arrBlackPawnPushes = new ArrayList<>();
-
-    // The offsets of the top,bottom, right, left, top-right, top-left, bottom-right,
-    // bottom-left directions respectively.
-    public static final int[] directionOffset = {8, -8, 1, -1, 9, 7, -7, -9};
-
-    public PrecomputedData() {
-        precomputedDistanceData();
-    }
-
-    /**
-     * This method will computes and store the distance of each square from the edges, in all 8
-     * directions: top, bottom, right, left, top-right, top-left, bottom-right, bottom-left.
-     * This will help when generating the valid moves for a piece.
-     */
-    public void precomputedDistanceData() {
-        for (int rank = 0; rank < 8; rank++) {
-            for (int file = 0; file < 8; file++) {
-                int topDirection = 7 - rank;
-                int bottomDirection = rank;
-                int rightDirection = 7 - file;
-                int leftDirection = file;
-                int topRightDirection = Math.min(topDirection, rightDirection);
-                int topLeftDirection = Math.min(topDirection, leftDirection);
-                int bottomRightDirection = Math.min(bottomDirection, rightDirection);
-                int bottomLeftDirection = Math.min(bottomDirection, leftDirection);
-
-                int squareIndex = rank * 8 + file;
-
-                squaresToTheEdge[squareIndex][0] = topDirection;
-                squaresToTheEdge[squareIndex][1] = bottomDirection;
-                squaresToTheEdge[squareIndex][2] = rightDirection;
-                squaresToTheEdge[squareIndex][3] = leftDirection;
-                squaresToTheEdge[squareIndex][4] = topRightDirection;
-                squaresToTheEdge[squareIndex][5] = topLeftDirection;
-                squaresToTheEdge[squareIndex][6] = bottomRightDirection;
-                squaresToTheEdge[squareIndex][7] = bottomLeftDirection;
-
-
-                arrKnightAttacks.add(new ArrayList<Integer>());
-                computeKnightMoves(squareIndex, file, rank);
-
-                arrKingAttacks.add(new ArrayList<Integer>());
-                computeKingMoves(squareIndex, file, rank);
-
-                arrBlackPawnAttacks.add(new ArrayList<Integer>());
-                computeBlackPawnAttacks(squareIndex, file);
-
-                arrBlackPawnPushes.add(new ArrayList<Integer>());
-                computeBlackPawnPushes(squareIndex, rank);
-
-                arrWhitePawnAttacks.add(new ArrayList<Integer>());
-                computeWhitePawnAttacks(squareIndex, file);
-
-                arrWhitePawnPushes.add(new ArrayList<Integer>());
-                computeWhitePawnPushes(squareIndex, rank);
+    // The squares attacked from every square, as bitboards.
+    public static final long[] knightAttackMasks = new long[64];
+    public static final long[] kingAttackMasks = new long[64];
+    // Indexed by the color of the pawn, then by its square.
+    public static final long[][] pawnAttackMasks = new long[Color.white + 1][64];
+    // The square in front of a pawn, indexed by the color of the pawn, then by its square.
+    public static final long[][] pawnPushMasks = new long[Color.white + 1][64];
+    // The square two ranks in front of a pawn that has not moved yet, empty for the other squares.
+    public static final long[][] pawnDoublePushMasks = new long[Color.white + 1][64];
+    // The squares strictly between two squares that share a rank, a file or a diagonal. It is
+    // empty for squares that are not aligned.
+    public static final long[][] squaresBetween = new long[64][64];
+    // The whole line (from edge to edge) that goes through two aligned squares. It is empty for
+    // squares that are not aligned.
+    public static final long[][] lineThrough = new long[64][64];
+    // The number of king moves between two squares.
+    public static final int[][] squareDistance = new int[64][64];
+
+    static {
+        computeAttackMasks();
+        computeLines();
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                squareDistance[from][to] = Math.max(Math.abs((from >> 3) - (to >> 3)), Math.abs((from & 7) - (to & 7)));
             }
         }
     }
 
-    public void computeKnightMoves(int squareIndex, int file, int rank) {
-        int attackIndex;
-        /*
-        Checks if the knight can go in the north-north-east direction (2 squares up, 1 square right).
-         */
-        if (rank < 6 && file < 7) {
-            attackIndex = squareIndex + 17;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the north-east-east direction (1 square up, 2 squares right).
-         */
-        if (rank < 7 && file < 6) {
-            attackIndex = squareIndex + 10;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the south-east-east direction (1 square down, 2 squares right).
-         */
-        if (rank > 0 && file < 6) {
-            attackIndex = squareIndex - 6;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the south-south-east direction (2 squares down, 1 square right).
-         */
-        if (rank > 1 && file < 7) {
-            attackIndex = squareIndex - 15;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the south-south-west direction (2 squares down, 1 square left).
-         */
-        if (rank > 1 && file > 0) {
-            attackIndex = squareIndex - 17;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the south-west-west direction (1 square down, 2 squares left).
-         */
-        if (rank > 0 && file > 1) {
-            attackIndex = squareIndex - 10;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the north-west-west direction (1 square up, 2 squares left).
-         */
-        if (rank < 7 && file > 1) {
-            attackIndex = squareIndex + 6;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
-        /*
-        Checks if the knight can go in the north-north-west direction (2 squares up, 1 square left).
-         */
-        if (rank < 6 && file > 0) {
-            attackIndex = squareIndex + 15;
-            arrKnightAttacks.get(squareIndex).add(attackIndex);
-        }
+    private PrecomputedData() {
     }
 
-    public void computeKingMoves(int squareIndex, int file, int rank) {
-        int attackIndex;
-        if (rank < 7) {
-            attackIndex = squareIndex + 8;
-            arrKingAttacks.get(squareIndex).add(attackIndex);
-            if (file < 7) {
-                attackIndex = squareIndex + 9;
-                arrKingAttacks.get(squareIndex).add(attackIndex);
+    private static void computeAttackMasks() {
+        // Rank and file offsets of the knight jumps.
+        int[][] knightJumps = {{2, 1}, {1, 2}, {-1, 2}, {-2, 1}, {-2, -1}, {-1, -2}, {1, -2}, {2, -1}};
+        for (int square = 0; square < 64; square++) {
+            int rank = square >> 3;
+            int file = square & 7;
+            for (int[] jump : knightJumps) {
+                knightAttackMasks[square] |= maskOf(rank + jump[0], file + jump[1]);
             }
-            if (file > 0) {
-                attackIndex = squareIndex + 7;
-                arrKingAttacks.get(squareIndex).add(attackIndex);
+            for (int rankOffset = -1; rankOffset <= 1; rankOffset++) {
+                for (int fileOffset = -1; fileOffset <= 1; fileOffset++) {
+                    if (rankOffset != 0 || fileOffset != 0) {
+                        kingAttackMasks[square] |= maskOf(rank + rankOffset, file + fileOffset);
+                    }
+                }
             }
-        }
-        if (rank > 0) {
-            attackIndex = squareIndex - 8;
-            arrKingAttacks.get(squareIndex).add(attackIndex);
-            if (file < 7) {
-                attackIndex = squareIndex - 7;
-                arrKingAttacks.get(squareIndex).add(attackIndex);
+            pawnAttackMasks[Color.white][square] = maskOf(rank + 1, file - 1) | maskOf(rank + 1, file + 1);
+            pawnAttackMasks[Color.black][square] = maskOf(rank - 1, file - 1) | maskOf(rank - 1, file + 1);
+
+            pawnPushMasks[Color.white][square] = maskOf(rank + 1, file);
+            pawnPushMasks[Color.black][square] = maskOf(rank - 1, file);
+            // If the pawn has not moved yet, then the double square push is also available for it.
+            if (rank == 1) {
+                pawnDoublePushMasks[Color.white][square] = maskOf(rank + 2, file);
             }
-            if (file > 0) {
-                attackIndex = squareIndex - 9;
-                arrKingAttacks.get(squareIndex).add(attackIndex);
+            if (rank == 6) {
+                pawnDoublePushMasks[Color.black][square] = maskOf(rank - 2, file);
             }
         }
-        if (file > 0) {
-            attackIndex = squareIndex - 1;
-            arrKingAttacks.get(squareIndex).add(attackIndex);
-        }
-        if (file < 7) {
-            attackIndex = squareIndex + 1;
-            arrKingAttacks.get(squareIndex).add(attackIndex);
-        }
-    }
-
-    public void computeBlackPawnAttacks(int squareIndex, int file) {
-        int attackIndex;
-        if (file > 0) {
-            attackIndex = squareIndex - 9;
-            arrBlackPawnAttacks.get(squareIndex).add(attackIndex);
-        }
-        if (file < 7) {
-            attackIndex = squareIndex - 7;
-            arrBlackPawnAttacks.get(squareIndex).add(attackIndex);
-        }
     }
 
-    public void computeWhitePawnAttacks(int squareIndex, int file) {
-        int attackIndex;
-        if (file > 0) {
-            attackIndex = squareIndex + 7;
-            arrWhitePawnAttacks.get(squareIndex).add(attackIndex);
-        }
-        if (file < 7) {
-            attackIndex = squareIndex + 9;
-            arrWhitePawnAttacks.get(squareIndex).add(attackIndex);
-        }
-    }
-
-    public void computeBlackPawnPushes(int squareIndex, int rank) {
-        arrBlackPawnPushes.get(squareIndex).add(squareIndex - 8);
-        // If the pawn has not moved yet, then the double square push is also available for it.
-        if (rank == 6) {
-            arrBlackPawnPushes.get(squareIndex).add(squareIndex - 16);
+    private static void computeLines() {
+        for (int from = 0; from < 64; from++) {
+            long fromMask = 1L << from;
+            for (int to = 0; to < 64; to++) {
+                if (from == to) {
+                    continue;
+                }
+                long toMask = 1L << to;
+                if ((MagicBitboards.rookAttacks(from, 0) & toMask) != 0) {
+                    squaresBetween[from][to] = MagicBitboards.rookAttacks(from, toMask) & MagicBitboards.rookAttacks(to, fromMask);
+                    lineThrough[from][to] = (MagicBitboards.rookAttacks(from, 0) & MagicBitboards.rookAttacks(to, 0)) | fromMask | toMask;
+                }
+                else if ((MagicBitboards.bishopAttacks(from, 0) & toMask) != 0) {
+                    squaresBetween[from][to] = MagicBitboards.bishopAttacks(from, toMask) & MagicBitboards.bishopAttacks(to, fromMask);
+                    lineThrough[from][to] = (MagicBitboards.bishopAttacks(from, 0) & MagicBitboards.bishopAttacks(to, 0)) | fromMask | toMask;
+                }
+            }
         }
     }
 
-    public void computeWhitePawnPushes(int squareIndex, int rank) {
-        arrWhitePawnPushes.get(squareIndex).add(squareIndex + 8);
-        // If the pawn has not moved yet, then the double square push is also available for it.
-        if (rank == 1) {
-            arrWhitePawnPushes.get(squareIndex).add(squareIndex + 16);
+    /**
+     * @return the bitboard of the square, or an empty bitboard if the square is off the board
+     */
+    private static long maskOf(int rank, int file) {
+        if (rank < 0 || rank > 7 || file < 0 || file > 7) {
+            return 0;
         }
+        return 1L << (rank * 8 + file);
     }
 }
@@ -0,0 +1,522 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+import com.example.chess.entities.Piece;
+
+/**
+ * Finds the best move of the side to move with a negamax alpha-beta search. Negamax scores every
+ * position from the point of view of the side to move, so the score of a move is the negated
+ * score of the position it leads to, and the same code searches for both sides.
+ * The search is a principal variation search: the first move of a node is expected to be the
+ * best one and is searched with the full window, the other moves are only tested against it with
+ * a null window, which is much cheaper, and searched again with the full window if they turn out
+ * to be better.
+ * The search is iteratively deepened: the position is searched to depth 1, then 2, and so on,
+ * until the maximum depth, the node limit or the deadlines of the TimeManager are reached. Each
+ * iteration starts with the best move of the previous one, and a search stopped in the middle of
+ * an iteration plays the best move of the last completed one.
+ * The results of the nodes are kept in a TranspositionTable. A position found there with a deep
+ * enough result is not searched again, and otherwise its stored best move is tried first.
+ * The other moves are ordered with the tables of MoveOrdering, which the search updates every
+ * time a quiet move causes a beta cutoff.
+ * At depth 0 the search goes on with a quiescence search of the captures and the promotions,
+ * so that no position is evaluated in the middle of an exchange.
+ * The search is selective, each of these can be switched off with its option below:
+ * - null move pruning: if the side to move is still above beta after passing its turn and
+ * a reduced search, the node is cut off without searching its moves;
+ * - reverse futility pruning: near the leaves, a node whose static evaluation is above beta by
+ * a margin growing with the depth is cut off;
+ * - late move reductions: the quiet moves tried late, which the ordering expects to be bad, are
+ * searched less deeply, and searched again at the full depth if they beat alpha anyway;
+ * - check extensions: the moves that give check are searched one ply deeper.
+ * The cutoffs are only taken in the null window searches, never on the principal variation.
+ * The moves are made and taken back on the game itself, so the game must not be touched while a
+ * search is running.
+ */
+public class Search {
+
+    public static final int infinity = 32000;
+    // The score of a side that is checkmated at the root. A mate n plies away scores
+    // mateScore - n, so the shortest mate is preferred.
+    public static final int mateScore = 31000;
+    // The scores above this one (or below its opposite) are mates.
+    public static final int mateBound = mateScore - MovementHandler.maxPly;
+    // The margin of delta pruning: a capture that can't bring the score up to alpha even with
+    // this much positional gain is not searched.
+    private static final int deltaMargin = 200;
+    // The time is only looked at every 1024 nodes, reading the clock is not free.
+    private static final int timeCheckMask = 1023;
+    // The size of the pawn hash table and of the material table of every search, in kilobytes.
+    private static final int pawnTableSize = 256;
+    private static final int materialTableSize = 16;
+    // Null move pruning is tried from this depth, the null move being searched
+    // nullMoveReduction + depth / 6 plies less deep than the moves.
+    private static final int nullMoveMinDepth = 3;
+    private static final int nullMoveReduction = 3;
+    // Reverse futility pruning is tried up to this depth, with a margin of this much per ply.
+    private static final int reverseFutilityMaxDepth = 6;
+    private static final int reverseFutilityMargin = 100;
+    // Late move reductions start from this depth, with the move after the first lateMoveIndex ones.
+    private static final int lateMoveMinDepth = 3;
+    private static final int lateMoveIndex = 3;
+    // The reduction of a late move, indexed by the depth then by the index of the move. It
+    // grows with the logarithms of both.
+    private static final int[][] reductions = new int[MovementHandler.maxPly][MovementHandler.maxMoves];
+
+    static {
+        for (int depth = 1; depth < MovementHandler.maxPly; depth++) {
+            for (int moveIndex = 1; moveIndex < MovementHandler.maxMoves; moveIndex++) {
+                reductions[depth][moveIndex] = (int) (0.75 + Math.log(depth) * Math.log(moveIndex) / 2.25);
+            }
+        }
+    }
+
+    // The options of the selective search, see the class comment.
+    public boolean nullMovePruning = true;
+    public boolean reverseFutilityPruning = true;
+    public boolean lateMoveReductions = true;
+    public boolean checkExtensions = true;
+
+    private final Game game;
+    private final MovementHandler mh;
+    private final TranspositionTable tt;
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final StaticExchange staticExchange = new StaticExchange();
+    private final PawnHashTable pawnTable = new PawnHashTable(pawnTableSize);
+    private final MaterialTable materialTable = new MaterialTable(materialTableSize);
+    // One picker per ply, each with its own move buffer.
+    private final MovePicker[] pickers = new MovePicker[MovementHandler.maxPly];
+    // The quiet moves searched at every ply before the current one, to give them a history
+    // malus when a later move causes the cutoff.
+    private final int[][] quietsSearched = new int[MovementHandler.maxPly][MovementHandler.maxMoves];
+
+    private TimeManager timeManager;
+    private long nodes;
+    private long nodeLimit;
+    private boolean stopped;
+    // Set by another thread to stop the search, it is looked at with the time.
+    private volatile boolean stopRequested;
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    // The result of the current iteration.
+    private int rootBestMove;
+    private int rootBestScore;
+    // The move played if not even the first iteration could be completed.
+    private int firstRootMove;
+
+    public Search(Game game, TranspositionTable tt) {
+        this.game = game;
+        this.tt = tt;
+        mh = new MovementHandler(game);
+        for (int ply = 0; ply < pickers.length; ply++) {
+            pickers[ply] = new MovePicker(mh, ordering);
+        }
+    }
+
+    /**
+     * Gives this search the same options as the other one.
+     */
+    public void copyOptions(Search search) {
+        nullMovePruning = search.nullMovePruning;
+        reverseFutilityPruning = search.reverseFutilityPruning;
+        lateMoveReductions = search.lateMoveReductions;
+        checkExtensions = search.checkExtensions;
+    }
+
+    /**
+     * Searches without any time limit.
+     */
+    public int findBestMove(int maxDepth, long nodeLimit) {
+        TimeManager infiniteTime = new TimeManager();
+        infiniteTime.startInfinite();
+        return findBestMove(maxDepth, nodeLimit, infiniteTime);
+    }
+
+    /**
+     * @param maxDepth    the depth of the last iteration, in plies
+     * @param nodeLimit   the number of nodes after which the search stops, 0 for no limit
+     * @param timeManager the deadlines of the search, already started. The generation of the
+     *                    transposition table is up to the caller, since the table may be shared.
+     * @return the best move of the last completed iteration, or PackedMove.none if the side to
+     * move has no legal move
+     */
+    public int findBestMove(int maxDepth, long nodeLimit, TimeManager timeManager) {
+        return findBestMove(1, maxDepth, nodeLimit, timeManager);
+    }
+
+    /**
+     * @param firstDepth the depth of the first iteration. The helper threads of a parallel search
+     *                   start at different depths, so that they don't all search the same thing.
+     */
+    public int findBestMove(int firstDepth, int maxDepth, long nodeLimit, TimeManager timeManager) {
+        this.timeManager = timeManager;
+        nodes = 0;
+        this.nodeLimit = nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE;
+        stopped = false;
+        bestMove = PackedMove.none;
+        bestScore = -infinity;
+        completedDepth = 0;
+        firstRootMove = PackedMove.none;
+        // The killers belong to the plies of the previous search, the history and the
+        // countermoves are still mostly true.
+        ordering.clearKillers();
+        int lastDepth = Math.min(Math.max(1, maxDepth), MovementHandler.maxPly - 1);
+        for (int depth = Math.min(firstDepth, lastDepth); depth <= lastDepth; depth++) {
+            searchRoot(depth);
+            if (stopped) {
+                break;
+            }
+            bestMove = rootBestMove;
+            bestScore = rootBestScore;
+            completedDepth = depth;
+            // A mate within the depth is the shortest one, a deeper search can't do better.
+            if (bestMove == PackedMove.none || mateScore - Math.abs(bestScore) <= depth) {
+                break;
+            }
+            if (timeManager.isSoftDeadlineReached()) {
+                break;
+            }
+        }
+        if (bestMove == PackedMove.none) {
+            bestMove = firstRootMove;
+        }
+        return bestMove;
+    }
+
+    /**
+     * @return the score of the best move of the last search, from the point of view of the side
+     * to move
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Stops the search from another thread, as soon as possible. The search then returns the
+     * result of its last completed iteration. A search can't be started again once stopped, until
+     * resetStop is called.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Allows the search to be started again after stop. It must be called before the search is
+     * handed to its thread: called by the search itself, it would clear a stop that came first.
+     */
+    public void resetStop() {
+        stopRequested = false;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public PawnHashTable getPawnTable() {
+        return pawnTable;
+    }
+
+    /**
+     * @return the depth of the last iteration of the last search that was completed
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    private void searchRoot(int depth) {
+        MovePicker picker = pickers[0];
+        // The best move of the previous iteration is searched first.
+        picker.init(bestMove, 0);
+        rootBestMove = PackedMove.none;
+        rootBestScore = -infinity;
+        int alpha = -infinity;
+        int beta = infinity;
+        int moveCount = 0;
+        for (int move = picker.next(); move != PackedMove.none; move = picker.next()) {
+            if (firstRootMove == PackedMove.none) {
+                firstRootMove = move;
+            }
+            game.makeMove(move);
+            int newDepth = depth - 1 + checkExtension();
+            int score = searchMove(moveCount, newDepth, 0, 1, alpha, beta);
+            game.unmakeMove();
+            if (stopped) {
+                return;
+            }
+            moveCount++;
+            if (score > alpha) {
+                alpha = score;
+                rootBestMove = move;
+                rootBestScore = score;
+            }
+        }
+        if (rootBestMove != PackedMove.none) {
+            tt.store(game.getZobristKey(), rootBestMove, scoreToTt(rootBestScore, 0), depth, TranspositionTable.exactScore);
+        }
+    }
+
+    /**
+     * Searches the move just made, the first one with the full window and the others as described
+     * in the class comment.
+     *
+     * @param reduction the number of plies the null window search is reduced by. The move is
+     *                  searched again at the full depth if the reduced search beats alpha.
+     * @return the score of the move from the point of view of the side that made it
+     */
+    private int searchMove(int moveIndex, int depth, int reduction, int ply, int alpha, int beta) {
+        if (moveIndex == 0) {
+            return -negamax(depth, ply, -beta, -alpha);
+        }
+        int score = -negamax(depth - reduction, ply, -alpha - 1, -alpha);
+        if (reduction > 0 && score > alpha) {
+            score = -negamax(depth, ply, -alpha - 1, -alpha);
+        }
+        if (score > alpha && score < beta) {
+            score = -negamax(depth, ply, -beta, -alpha);
+        }
+        return score;
+    }
+
+    /**
+     * @return 1 if the move just made gives check and check extensions are on, 0 otherwise
+     */
+    private int checkExtension() {
+        return checkExtensions && mh.isKingInCheck(game.sideToMove) ? 1 : 0;
+    }
+
+    /**
+     * Counts the node and tells if the search must stop.
+     */
+    private boolean enterNode() {
+        nodes++;
+        if (nodes >= nodeLimit || ((nodes & timeCheckMask) == 0 && (stopRequested || timeManager.isHardDeadlineReached()))) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (depth <= 0) {
+            return quiescence(ply, alpha, beta);
+        }
+        if (enterNode()) {
+            return 0;
+        }
+        if (game.halfmoveClock >= 100 || game.isRepetition()) {
+            return 0;
+        }
+        if (ply >= MovementHandler.maxPly - 1) {
+            return Evaluation.evaluate(game.position, game.sideToMove, pawnTable, materialTable);
+        }
+
+        long key = game.getZobristKey();
+        long ttData = tt.probe(key);
+        int ttMove = PackedMove.none;
+        // The cutoffs are only taken in the null window searches, the exact scores of the
+        // principal variation are always searched, so that the best line can't be cut short.
+        boolean nullWindow = beta - alpha == 1;
+        if (ttData != 0) {
+            ttMove = TranspositionTable.getMove(ttData);
+            if (nullWindow && TranspositionTable.getDepth(ttData) >= depth) {
+                int ttScore = scoreFromTt(TranspositionTable.getScore(ttData), ply);
+                int bound = TranspositionTable.getBound(ttData);
+                if (bound == TranspositionTable.exactScore ||
+                        (bound == TranspositionTable.lowerBound && ttScore >= beta) ||
+                        (bound == TranspositionTable.upperBound && ttScore <= alpha)) {
+                    return ttScore;
+                }
+            }
+        }
+
+        boolean inCheck = mh.isKingInCheck(game.sideToMove);
+        if (nullWindow && !inCheck && Math.abs(beta) < mateBound) {
+            int staticScore = Evaluation.evaluate(game.position, game.sideToMove, pawnTable, materialTable);
+            if (reverseFutilityPruning && depth <= reverseFutilityMaxDepth &&
+                    staticScore - reverseFutilityMargin * depth >= beta) {
+                return staticScore;
+            }
+            // Two null moves in a row would only search the same position with less depth. In
+            // pawn endgames passing is often the best move (zugzwang), the null move would be
+            // wrong there.
+            if (nullMovePruning && depth >= nullMoveMinDepth && staticScore >= beta &&
+                    game.getLastMove() != PackedMove.none && hasPiecesBesidesPawns(game.sideToMove)) {
+                game.makeNullMove();
+                int score = -negamax(depth - 1 - nullMoveReduction - depth / 6, ply + 1, -beta, -beta + 1);
+                game.unmakeNullMove();
+                if (stopped) {
+                    return 0;
+                }
+                if (score >= beta) {
+                    // A mate found after passing is not a mate the side to move can force.
+                    return score > mateBound ? beta : score;
+                }
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        picker.init(ttMove, ply);
+        int originalAlpha = alpha;
+        int bestScore = -infinity;
+        int bestMove = PackedMove.none;
+        int moveCount = 0;
+        int quietCount = 0;
+        for (int move = picker.next(); move != PackedMove.none; move = picker.next()) {
+            boolean quiet = !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+            game.makeMove(move);
+            int extension = checkExtension();
+            int newDepth = depth - 1 + extension;
+            int reduction = 0;
+            if (lateMoveReductions && quiet && !inCheck && extension == 0 &&
+                    depth >= lateMoveMinDepth && moveCount >= lateMoveIndex) {
+                reduction = Math.min(reductions[depth][moveCount], newDepth - 1);
+            }
+            int score = searchMove(moveCount, newDepth, reduction, ply + 1, alpha, beta);
+            game.unmakeMove();
+            moveCount++;
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            updateQuietOrdering(move, depth, ply, quietCount);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (quiet) {
+                quietsSearched[ply][quietCount++] = move;
+            }
+        }
+
+        if (moveCount == 0) {
+            return inCheck ? -mateScore + ply : 0;
+        }
+        int bound = bestScore >= beta ? TranspositionTable.lowerBound :
+                bestScore > originalAlpha ? TranspositionTable.exactScore : TranspositionTable.upperBound;
+        tt.store(key, bestMove, scoreToTt(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Searches the captures and the promotions only, until the position is quiet. The side to move
+     * is not forced to capture, so the static evaluation is a lower bound of the score (stand pat).
+     * The captures that can't raise the score to alpha (delta pruning) and the ones that lose
+     * material (static exchange evaluation) are skipped. In check, every evasion is searched, so
+     * that mates are seen.
+     */
+    private int quiescence(int ply, int alpha, int beta) {
+        if (enterNode()) {
+            return 0;
+        }
+        if (game.halfmoveClock >= 100 || game.isRepetition()) {
+            return 0;
+        }
+        int staticScore = Evaluation.evaluate(game.position, game.sideToMove, pawnTable, materialTable);
+        if (ply >= MovementHandler.maxPly - 1) {
+            return staticScore;
+        }
+        boolean inCheck = mh.isKingInCheck(game.sideToMove);
+        int bestScore = -infinity;
+        if (!inCheck) {
+            bestScore = staticScore;
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            if (bestScore > alpha) {
+                alpha = bestScore;
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        if (inCheck) {
+            picker.init(PackedMove.none, ply);
+        }
+        else {
+            picker.initNoisy();
+        }
+        int moveCount = 0;
+        for (int move = picker.next(); move != PackedMove.none; move = picker.next()) {
+            moveCount++;
+            if (!inCheck) {
+                if (!PackedMove.isPromotion(move) &&
+                        staticScore + StaticExchange.immediateGain(game.position, move) + deltaMargin <= alpha) {
+                    continue;
+                }
+                if (staticExchange.evaluate(game.position, move) < 0) {
+                    continue;
+                }
+            }
+            game.makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            game.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && moveCount == 0) {
+            return -mateScore + ply;
+        }
+        return bestScore;
+    }
+
+    private boolean hasPiecesBesidesPawns(int color) {
+        Position position = game.position;
+        return (position.getColorOccupancy(color) & ~position.getPieces(color, Piece.pawn) &
+                ~position.getPieces(color, Piece.king)) != 0;
+    }
+
+    /**
+     * Rewards the quiet move that caused a cutoff, and punishes the quiet moves searched before it
+     * in the history table.
+     */
+    private void updateQuietOrdering(int move, int depth, int ply, int quietCount) {
+        int color = game.sideToMove;
+        int bonus = MoveOrdering.historyBonus(depth);
+        ordering.addKiller(ply, move);
+        ordering.setCounterMove(game.position, game.getLastMove(), move);
+        ordering.updateHistory(color, move, bonus);
+        for (int i = 0; i < quietCount; i++) {
+            ordering.updateHistory(color, quietsSearched[ply][i], -bonus);
+        }
+    }
+
+    /**
+     * The mate scores are relative to the root, but the same position can be reached at
+     * another ply, so they are stored relative to the position itself.
+     */
+    private static int scoreToTt(int score, int ply) {
+        if (score > mateBound) {
+            return score + ply;
+        }
+        if (score < -mateBound) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTt(int score, int ply) {
+        if (score > mateBound) {
+            return score - ply;
+        }
+        if (score < -mateBound) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * Static exchange evaluation: the material won or lost by a capture once all the captures on
+ * the same square have been played, each side capturing with its least valuable piece first and
+ * being free to stop when going on would lose material. Nothing is played on the board, the
+ * attackers of the square are found with Position.attackersTo on an occupancy from which the
+ * pieces that already captured are removed, which also reveals the sliders hidden behind them.
+ * Pins are not taken into account.
+ * An instance keeps the buffer of the exchange, so each search thread needs its own.
+ */
+public class StaticExchange {
+
+    // Indexed by the piece type. The king is worth more than everything else, so that it is
+    // always the last piece to capture.
+    private static final int[] values = {0, 20000, 900, 500, 330, 320, 100};
+    // The longest possible exchange: every piece of the board captures on the square.
+    private static final int maxExchangeLength = 32;
+
+    // The gains of the exchange, each from the point of view of the side that captures.
+    private final int[] gains = new int[maxExchangeLength];
+
+    /**
+     * @return the material the capture gains on the square of its target, from the point of view
+     * of the side that plays it. It is negative for a losing capture.
+     */
+    public int evaluate(Position position, int move) {
+        int initialSquare = PackedMove.getInitialSquare(move);
+        int targetSquare = PackedMove.getTargetSquare(move);
+        int movingPiece = position.getPiece(initialSquare);
+        int side = Piece.pieceColor(movingPiece);
+
+        long occupied = position.getOccupancy() ^ (1L << initialSquare);
+        int pieceOnSquare = movingPiece & 7;
+        if (PackedMove.getFlags(move) == PackedMove.enPassantCapture) {
+            gains[0] = values[Piece.pawn];
+            occupied ^= 1L << (side == Color.white ? targetSquare - 8 : targetSquare + 8);
+        }
+        else {
+            gains[0] = values[position.getPiece(targetSquare) & 7];
+        }
+        if (PackedMove.isPromotion(move)) {
+            pieceOnSquare = PackedMove.getPromotionType(move);
+            gains[0] += values[pieceOnSquare] - values[Piece.pawn];
+        }
+
+        int depth = 0;
+        long attackers = position.attackersTo(targetSquare, occupied) & occupied;
+        while (true) {
+            side = Color.oppositeColor(side);
+            long sideAttackers = attackers & position.getColorOccupancy(side);
+            if (sideAttackers == 0) {
+                break;
+            }
+            int attackerType = Piece.pawn;
+            long attacker = sideAttackers & position.getPieces(side, attackerType);
+            while (attacker == 0) {
+                attackerType--;
+                attacker = sideAttackers & position.getPieces(side, attackerType);
+            }
+            // The king can't capture a defended piece.
+            if (attackerType == Piece.king && (attackers & position.getColorOccupancy(Color.oppositeColor(side))) != 0) {
+                break;
+            }
+            depth++;
+            gains[depth] = values[pieceOnSquare] - gains[depth - 1];
+            occupied ^= Long.lowestOneBit(attacker);
+            attackers = position.attackersTo(targetSquare, occupied) & occupied;
+            pieceOnSquare = attackerType;
+        }
+        // Going back through the exchange, each side only captures if it gains by it.
+        while (depth > 0) {
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+            depth--;
+        }
+        return gains[0];
+    }
+
+    /**
+     * @return the material taken by the capture or the promotion before any recapture, used for
+     * delta pruning
+     */
+    public static int immediateGain(Position position, int move) {
+        int gain = 0;
+        if (PackedMove.getFlags(move) == PackedMove.enPassantCapture) {
+            gain = Evaluation.pieceValues[Piece.pawn];
+        }
+        else if (PackedMove.isCapture(move)) {
+            gain = Evaluation.pieceValues[position.getPiece(PackedMove.getTargetSquare(move)) & 7];
+        }
+        if (PackedMove.isPromotion(move)) {
+            gain += Evaluation.pieceValues[PackedMove.getPromotionType(move)] - Evaluation.pieceValues[Piece.pawn];
+        }
+        return gain;
+    }
+}
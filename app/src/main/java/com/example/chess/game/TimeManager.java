@@ -0,0 +1,81 @@
+package com.example.chess.game;
+
+/**
+ * Decides how long the search of a move may take. It gives two deadlines:
+ * - the soft deadline, after which no new iteration of the iterative deepening is started, since
+ * it would most likely not be finished anyway;
+ * - the hard deadline, at which the search is stopped in the middle of an iteration.
+ * The time can be a fixed time per move, or come from a clock: the remaining time of the side to
+ * move and the increment it gets after every move.
+ */
+public class TimeManager {
+
+    // The number of moves the remaining time is shared between when it is not known when the
+    // next time control comes.
+    public static final int defaultMovesToGo = 30;
+    // The hard deadline is this many times the time planned for the move, which leaves room for
+    // an iteration that takes longer than expected.
+    private static final int hardDeadlineFactor = 4;
+    // Kept for the time it takes to get the move to the board, in milliseconds.
+    private static final long moveOverhead = 50;
+
+    private long startTime;
+    private boolean timeLimited;
+    private long softDeadline;
+    private long hardDeadline;
+
+    /**
+     * No deadline at all, the search is only limited by its depth or its nodes.
+     */
+    public void startInfinite() {
+        startTime = System.nanoTime();
+        timeLimited = false;
+    }
+
+    /**
+     * @param moveTime the time the search may take, in milliseconds. Half of it is the soft
+     *                 deadline, since an iteration takes longer than all the ones before it.
+     */
+    public void startFixedTime(long moveTime) {
+        startTime = System.nanoTime();
+        timeLimited = true;
+        softDeadline = startTime + millisToNanos(moveTime / 2);
+        hardDeadline = startTime + millisToNanos(moveTime);
+    }
+
+    /**
+     * @param remainingTime the time left on the clock of the side to move, in milliseconds
+     * @param increment     the time added to the clock after every move, in milliseconds
+     * @param movesToGo     the number of moves until the next time control, 0 if unknown
+     */
+    public void startClock(long remainingTime, long increment, int movesToGo) {
+        startTime = System.nanoTime();
+        timeLimited = true;
+        long availableTime = Math.max(1, remainingTime - Math.min(moveOverhead, remainingTime / 10));
+        int moves = movesToGo > 0 ? movesToGo : defaultMovesToGo;
+        long plannedTime = Math.min(availableTime, availableTime / moves + increment * 3 / 4);
+        long maximumTime = Math.min(availableTime, plannedTime * hardDeadlineFactor);
+        softDeadline = startTime + millisToNanos(plannedTime);
+        hardDeadline = startTime + millisToNanos(maximumTime);
+    }
+
+    public boolean isSoftDeadlineReached() {
+        // The deadlines are compared by difference, as System.nanoTime may overflow.
+        return timeLimited && System.nanoTime() - softDeadline >= 0;
+    }
+
+    public boolean isHardDeadlineReached() {
+        return timeLimited && System.nanoTime() - hardDeadline >= 0;
+    }
+
+    /**
+     * @return the time since the search started, in milliseconds
+     */
+    public long getElapsedTime() {
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    private static long millisToNanos(long milliseconds) {
+        return milliseconds * 1000000;
+    }
+}
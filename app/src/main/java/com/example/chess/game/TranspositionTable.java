@@ -0,0 +1,142 @@
+package com.example.chess.game;
+
+/**
+ * Hash table of the results of the search, keyed by the Zobrist key of the position. When a
+ * position is reached again, through another move order or in a later iteration, its result can
+ * be reused instead of searching it again, or at least its best move can be tried first.
+ * The table is a single long array, shared by all the search threads without any lock:
+ * - an entry takes two longs, the key XOR-ed with the data, then the data (move, score, depth,
+ * bound and age). An entry is only trusted if the two halves XOR back to the key, so an entry
+ * torn by two threads writing at the same time is seen as a miss instead of giving a wrong result;
+ * - the entries are grouped in buckets of bucketSize entries, a key can be stored in any entry
+ * of its bucket. The number of buckets is a power of two, so the bucket of a key is given by its
+ * lowest bits.
+ * Every search starts a new generation. When a bucket is full, the entry replaced is the one
+ * that is worth the least: the shallowest, an entry of an older search counting as much
+ * shallower as it is old.
+ */
+public class TranspositionTable {
+
+    // The kinds of scores stored. None of them is 0, so the data of a stored entry is never 0.
+    // The score is a maximum, the search of the position failed low.
+    public static final int upperBound = 1;
+    // The score is a minimum, the search of the position failed high.
+    public static final int lowerBound = 2;
+    public static final int exactScore = 3;
+
+    public static final int bucketSize = 4;
+    private static final int entrySize = 2;
+    // The generations are counted modulo 64.
+    private static final int generationMask = 63;
+    // How many plies of depth a generation of age is worth when choosing the entry to replace.
+    private static final int agePenalty = 8;
+
+    /*
+    The layout of the data:
+    - bits 0-15: the best move, packed as described in PackedMove;
+    - bits 16-31: the score, as a signed 16-bit value;
+    - bits 32-39: the depth;
+    - bits 40-41: the bound;
+    - bits 42-47: the generation.
+     */
+    private static final int scoreShift = 16;
+    private static final int depthShift = 32;
+    private static final int boundShift = 40;
+    private static final int generationShift = 42;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * @param megabytes the memory budget of the table. The number of buckets is rounded down to
+     *                  a power of two.
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Math.max(1, (long) megabytes * 1024 * 1024 / (bucketSize * entrySize * 8));
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, 1 << 24));
+        table = new long[bucketCount * bucketSize * entrySize];
+        bucketMask = bucketCount - 1;
+    }
+
+    /**
+     * Starts a new generation. It is called at the start of every search, so that the entries of
+     * the previous searches are replaced first.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & generationMask;
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = 0;
+        }
+        generation = 0;
+    }
+
+    /**
+     * @return the data stored for the position, to be read with the getters below, or 0 if
+     * the position is not in the table
+     */
+    public long probe(long key) {
+        int bucketIndex = ((int) key & bucketMask) * bucketSize * entrySize;
+        for (int i = bucketIndex; i < bucketIndex + bucketSize * entrySize; i += entrySize) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param move  the best move found, or PackedMove.none to keep the move already stored
+     * @param score the score, mate scores being relative to the position (see Search)
+     * @param bound upperBound, lowerBound or exactScore
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucketIndex = ((int) key & bucketMask) * bucketSize * entrySize;
+        int replacedIndex = bucketIndex;
+        int lowestWorth = Integer.MAX_VALUE;
+        for (int i = bucketIndex; i < bucketIndex + bucketSize * entrySize; i += entrySize) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key) {
+                replacedIndex = i;
+                if (move == 0) {
+                    move = getMove(data);
+                }
+                break;
+            }
+            int age = (generation - getGeneration(data)) & generationMask;
+            int worth = data == 0 ? Integer.MIN_VALUE : getDepth(data) - age * agePenalty;
+            if (worth < lowestWorth) {
+                lowestWorth = worth;
+                replacedIndex = i;
+            }
+        }
+        long data = (move & 0xFFFFL) | ((score & 0xFFFFL) << scoreShift) | ((long) (depth & 0xFF) << depthShift) |
+                ((long) bound << boundShift) | ((long) generation << generationShift);
+        table[replacedIndex] = key ^ data;
+        table[replacedIndex + 1] = data;
+    }
+
+    public static int getMove(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int getScore(long data) {
+        return (short) (data >>> scoreShift);
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> depthShift) & 0xFF;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> boundShift) & 3;
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> generationShift) & generationMask;
+    }
+}
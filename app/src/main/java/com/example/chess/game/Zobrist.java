@@ -0,0 +1,134 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Piece;
+import com.example.chess.utility.Color;
+
+/**
+ * Random keys used to give every position a 64-bit hash. The key of a position is the XOR of the
+ * keys of its pieces on their squares, of its castling rights, of the file of its en passant
+ * square and, when black is to move, of sideKey. Since XOR is its own inverse, a move changes the
+ * key by XOR-ing out what it removes and XOR-ing in what it adds, so the key is kept up to date
+ * as the moves are made instead of being computed from the whole board.
+ * The keys are generated from a fixed seed, so a position has the same key on every run.
+ */
+public class Zobrist {
+
+    // Indexed by the piece code, (color << 3) + type, then by the square.
+    public static final long[][] pieceKeys = new long[(Color.white << 3) + Piece.pawn + 1][64];
+    // Indexed by the castling rights packed as in Game.getCastlingRights.
+    public static final long[] castlingKeys = new long[16];
+    // Indexed by the file of the en passant square.
+    public static final long[] enPassantKeys = new long[8];
+    public static final long sideKey;
+
+    private static long seed = 0x2545F4914F6CDD1DL;
+
+    static {
+        for (int color = Color.black; color <= Color.white; color++) {
+            for (int type = Piece.king; type <= Piece.pawn; type++) {
+                for (int square = 0; square < 64; square++) {
+                    pieceKeys[(color << 3) + type][square] = nextRandom();
+                }
+            }
+        }
+        // No rights and no en passant square leave the key unchanged, so the initial key of an
+        // empty board is 0.
+        for (int rights = 1; rights < castlingKeys.length; rights++) {
+            castlingKeys[rights] = nextRandom();
+        }
+        for (int file = 0; file < enPassantKeys.length; file++) {
+            enPassantKeys[file] = nextRandom();
+        }
+        sideKey = nextRandom();
+    }
+
+    private Zobrist() {
+    }
+
+    // xorshift64* generator.
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * @return the key of the pieces of the position, computed from the whole board
+     */
+    public static long computePieceKey(Position position) {
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != Piece.empty) {
+                key ^= pieceKeys[piece][square];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return the key of the pawns of the position, computed from the whole board
+     */
+    public static long computePawnKey(Position position) {
+        long key = 0;
+        for (int color = Color.black; color <= Color.white; color++) {
+            long pawns = position.getPieces(color, Piece.pawn);
+            while (pawns != 0) {
+                key ^= pieceKeys[(color << 3) + Piece.pawn][Long.numberOfTrailingZeros(pawns)];
+                pawns &= pawns - 1;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * The material key does not depend on the squares: it is the XOR of pieceKeys[piece][i] for
+     * i from 0 to the number of such pieces minus one, for every piece code.
+     *
+     * @return the material key of the position, computed from the whole board
+     */
+    public static long computeMaterialKey(Position position) {
+        long key = 0;
+        for (int piece = 0; piece < position.pieceBitboards.length; piece++) {
+            int count = Long.bitCount(position.pieceBitboards[piece]);
+            for (int i = 0; i < count; i++) {
+                key ^= pieceKeys[piece][i];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return the key of the game, computed from scratch. It is the reference the incremental
+     * key of the game is checked against.
+     */
+    public static long computeKey(Game game) {
+        long key = computePieceKey(game.position);
+        key ^= castlingKeys[game.getCastlingRights()];
+        key ^= enPassantKey(game.position, game.enPassant, game.sideToMove);
+        if (game.sideToMove == Color.black) {
+            key ^= sideKey;
+        }
+        return key;
+    }
+
+    /**
+     * The en passant square is only part of the key when a pawn can actually capture on it.
+     * Otherwise the same position reached with or without a double pawn push would get two
+     * different keys, and repetitions and transpositions would be missed.
+     *
+     * @param sideToMove the color of the side that could capture en passant
+     * @return the en passant key to be XOR-ed into the key, or 0
+     */
+    public static long enPassantKey(Position position, int enPassant, int sideToMove) {
+        if (enPassant == Game.noEnPassant) {
+            return 0;
+        }
+        // The pawns able to capture on the square are the ones a pawn of the other color
+        // standing on it would attack.
+        long capturingPawns = PrecomputedData.pawnAttackMasks[Color.oppositeColor(sideToMove)][enPassant] &
+                position.getPieces(sideToMove, Piece.pawn);
+        return capturingPawns != 0 ? enPassantKeys[enPassant & 7] : 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+import com.example.chess.utility.Color;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EndgamesTest {
+
+    private static int evaluate(String fen) {
+        Game game = Perft.loadGame(fen);
+        return Evaluation.evaluate(game.position, game.sideToMove, new PawnHashTable(16), new MaterialTable(16));
+    }
+
+    @Test
+    public void kpk_isReadFromTheBitbase() {
+        // e6, e7 and e8 before the black king gets there.
+        assertTrue(KpkBitbase.isWin(Perft.loadGame("k7/8/8/4P3/8/8/8/4K3 w - - 0 1").position, Color.white, Color.white));
+        // The black king holds the opposition in front of the pawn.
+        assertFalse(KpkBitbase.isWin(Perft.loadGame("4k3/8/8/8/8/8/4P3/4K3 b - - 0 1").position, Color.white, Color.black));
+        // The first position, mirrored.
+        assertTrue(KpkBitbase.isWin(Perft.loadGame("4k3/8/8/8/4p3/8/8/K7 b - - 0 1").position, Color.black, Color.black));
+    }
+
+    @Test
+    public void knownEndgames_replaceTheGenericEvaluation() {
+        assertTrue(evaluate("k7/8/8/4P3/8/8/8/4K3 w - - 0 1") > Endgames.knownWin);
+        assertEquals(0, evaluate("4k3/8/8/8/8/8/4P3/4K3 b - - 0 1"));
+        // Seen from the lone king.
+        assertTrue(evaluate("4k3/8/8/8/8/8/8/R3K3 b - - 0 1") < -Endgames.knownWin);
+    }
+
+    @Test
+    public void loneMinorPiece_isScaledToADraw() {
+        assertTrue(evaluate("4k3/8/8/8/8/8/8/3NK3 w - - 0 1") < 50);
+    }
+
+    @Test
+    public void materialKey_followsCapturesAndPromotions() {
+        Game game = Perft.loadGame("4k3/1P6/8/8/8/8/8/4K2r w - - 0 1");
+        long key = game.position.materialKey;
+        // b8=Q removes a pawn and adds a queen.
+        game.makeMove(PackedMove.encode(49, 57, PackedMove.queenPromotion));
+        assertEquals(Zobrist.computeMaterialKey(game.position), game.position.materialKey);
+        game.unmakeMove();
+        assertEquals(key, game.position.materialKey);
+    }
+}
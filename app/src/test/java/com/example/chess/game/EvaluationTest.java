@@ -0,0 +1,53 @@
+package com.example.chess.game;
+
+import com.example.chess.utility.Color;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EvaluationTest {
+
+    @Test
+    public void incrementalEvaluation_matchesRecomputedEvaluation() {
+        // The reference positions have castlings, en passant captures and promotions.
+        for (String fen : Perft.referencePositions) {
+            Game game = Perft.loadGame(fen);
+            MoveTreeWalk.walk(game, 2, new MoveTreeWalk.NodeCheck() {
+                @Override
+                public void check(Game node) {
+                    assertEquals(Evaluation.evaluateFromScratch(node.position, node.sideToMove),
+                            Evaluation.evaluate(node.position, node.sideToMove));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void initialPosition_isEven() {
+        Game game = Perft.loadGame(Perft.initialPosition);
+        assertEquals(Evaluation.maxPhase, game.position.phase);
+        assertEquals(0, Evaluation.evaluate(game.position, Color.white));
+    }
+
+    @Test
+    public void endgameKing_prefersTheCenter() {
+        // Without pieces the phase is 0 and only the endgame tables count.
+        int centralKing = Evaluation.evaluate(Perft.loadGame("7k/8/8/8/3K4/8/8/8 w - - 0 1").position, Color.white);
+        int cornerKing = Evaluation.evaluate(Perft.loadGame("7k/8/8/8/8/8/8/K7 w - - 0 1").position, Color.white);
+        assertTrue(centralKing > cornerKing);
+    }
+
+    @Test
+    public void pawnHashTable_cachesThePassedPawns() {
+        // d5 and f2 are passed, the doubled h pawns are not.
+        Game game = Perft.loadGame("4k3/7p/7p/3P4/8/8/5p1P/4K3 w - - 0 1");
+        PawnHashTable table = new PawnHashTable(16);
+        int index = table.probe(game.position);
+        assertEquals(1L << 35, table.getPassedPawns(index, Color.white));
+        assertEquals(1L << 13, table.getPassedPawns(index, Color.black));
+        assertEquals(index, table.probe(game.position));
+        assertEquals(0.5, table.getHitRate(), 0);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MovePickerTest {
+
+    @Test
+    public void picker_givesEveryLegalMoveOnce() {
+        for (String fen : Perft.referencePositions) {
+            Game game = Perft.loadGame(fen);
+            MovementHandler mh = new MovementHandler(game);
+            int moveCount = mh.generateMoves(0);
+            int[] expected = Arrays.copyOf(mh.moveBuffers[0], moveCount);
+            Arrays.sort(expected);
+
+            // Without a transposition table move, with a legal one and with one from elsewhere.
+            int[] ttMoves = {PackedMove.none, expected[moveCount / 2], PackedMove.encode(0, 63, PackedMove.quiet)};
+            for (int ttMove : ttMoves) {
+                // One killer is legal here if it is a quiet move, the other one never is.
+                MoveOrdering ordering = new MoveOrdering();
+                ordering.addKiller(0, PackedMove.encode(0, 63, PackedMove.quiet));
+                ordering.addKiller(0, expected[0]);
+                MovePicker picker = new MovePicker(mh, ordering);
+                picker.init(ttMove, 0);
+                int[] picked = new int[MovementHandler.maxMoves];
+                int pickedCount = 0;
+                for (int move = picker.next(); move != PackedMove.none; move = picker.next()) {
+                    picked[pickedCount++] = move;
+                }
+                if (ttMove == expected[moveCount / 2]) {
+                    assertEquals(ttMove, picked[0]);
+                }
+                picked = Arrays.copyOf(picked, pickedCount);
+                Arrays.sort(picked);
+                assertArrayEquals(fen, expected, picked);
+            }
+        }
+    }
+
+    @Test
+    public void noisyAndQuietMoves_splitAllMoves() {
+        for (String fen : Perft.referencePositions) {
+            MovementHandler mh = new MovementHandler(Perft.loadGame(fen));
+            int moveCount = mh.generateMoves(0);
+            int[] expected = Arrays.copyOf(mh.moveBuffers[0], moveCount);
+            Arrays.sort(expected);
+
+            int[] buffer = new int[MovementHandler.maxMoves];
+            int noisyCount = mh.generateNoisyMoves(buffer, 0);
+            for (int i = 0; i < noisyCount; i++) {
+                assertTrue(PackedMove.isCapture(buffer[i]) || PackedMove.isPromotion(buffer[i]));
+            }
+            int[] split = Arrays.copyOf(buffer, mh.generateMoves(buffer, noisyCount, MovementHandler.quietMoves));
+            Arrays.sort(split);
+            assertArrayEquals(fen, expected, split);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.chess.game;
+
+/**
+ * Walks the legal move tree of a game, for the tests of the state that Position keeps up to date
+ * as the moves are made and taken back.
+ */
+class MoveTreeWalk {
+
+    interface NodeCheck {
+        void check(Game game);
+    }
+
+    private MoveTreeWalk() {
+    }
+
+    /**
+     * Makes every move of the tree down to the depth, and runs the check at every node: before
+     * its moves are made, and again once they are all taken back.
+     */
+    static void walk(Game game, int depth, NodeCheck check) {
+        walk(game, new MovementHandler(game), depth, check);
+    }
+
+    private static void walk(Game game, MovementHandler mh, int depth, NodeCheck check) {
+        check.check(game);
+        if (depth == 0) {
+            return;
+        }
+        int[] moves = new int[MovementHandler.maxMoves];
+        int count = mh.generateMoves(moves, 0, MovementHandler.allMoves);
+        for (int i = 0; i < count; i++) {
+            game.makeMove(moves[i]);
+            walk(game, mh, depth - 1, check);
+            game.unmakeMove();
+        }
+        check.check(game);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.chess.game;
+
+import com.example.chess.utility.Color;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NnueTest {
+
+    private static final int hiddenSize = 8;
+
+    private static short[] randomWeights(Random random, int count) {
+        short[] weights = new short[count];
+        for (int i = 0; i < count; i++) {
+            weights[i] = (short) (random.nextInt(201) - 100);
+        }
+        return weights;
+    }
+
+    private static byte[] randomOutputWeights(Random random, int count) {
+        byte[] weights = new byte[count];
+        for (int i = 0; i < count; i++) {
+            weights[i] = (byte) (random.nextInt(201) - 100);
+        }
+        return weights;
+    }
+
+    private static NnueNetwork randomNetwork() {
+        Random random = new Random(1);
+        return new NnueNetwork(hiddenSize, randomWeights(random, NnueNetwork.inputSize * hiddenSize),
+                randomWeights(random, hiddenSize), randomOutputWeights(random, 2 * hiddenSize), 1000);
+    }
+
+    @Test
+    public void incrementalAccumulator_matchesRecomputedAccumulator() {
+        final NnueNetwork network = randomNetwork();
+        for (String fen : Perft.referencePositions) {
+            Game game = Perft.loadGame(fen);
+            game.setNetwork(network);
+            // Compares the accumulator with one computed from scratch.
+            MoveTreeWalk.walk(game, 2, new MoveTreeWalk.NodeCheck() {
+                @Override
+                public void check(Game node) {
+                    NnueAccumulator expected = new NnueAccumulator(network);
+                    expected.refresh(node.position);
+                    assertArrayEquals(expected.getValues(Color.white), node.position.accumulator.getValues(Color.white));
+                    assertArrayEquals(expected.getValues(Color.black), node.position.accumulator.getValues(Color.black));
+                }
+            });
+        }
+    }
+
+    @Test
+    public void symmetricPosition_hasTheSameScoreForBothSides() {
+        Game game = Perft.loadGame(Perft.initialPosition);
+        game.setNetwork(randomNetwork());
+        assertEquals(game.position.accumulator.evaluate(Color.white), game.position.accumulator.evaluate(Color.black));
+    }
+
+    @Test
+    public void loadedNetwork_evaluatesLikeTheOriginal() throws IOException {
+        NnueNetwork network = randomNetwork();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeInt(output, NnueNetwork.formatVersion);
+        writeInt(output, hiddenSize);
+        writeShorts(output, network.featureWeights);
+        writeShorts(output, network.featureBiases);
+        output.write(network.outputWeights, 0, network.outputWeights.length);
+        writeInt(output, network.outputBias);
+        NnueNetwork loaded = NnueNetwork.load(new ByteArrayInputStream(output.toByteArray()));
+
+        Game game = Perft.loadGame(Perft.referencePositions[1]);
+        game.setNetwork(network);
+        int score = game.position.accumulator.evaluate(game.sideToMove);
+        game.setNetwork(loaded);
+        assertEquals(score, game.position.accumulator.evaluate(game.sideToMove));
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        for (int i = 0; i < 4; i++) {
+            output.write(value >>> (8 * i));
+        }
+    }
+
+    private static void writeShorts(ByteArrayOutputStream output, short[] values) {
+        for (short value : values) {
+            output.write(value);
+            output.write(value >>> 8);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chess.game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the move generation against the known node counts of the reference positions. Only
+ * the shallow depths are used, the deeper ones can be run with Perft.main.
+ */
+public class PerftTest {
+
+    // Keeps the test fast while still reaching promotions, castling and en passant.
+    private static final long maxNodes = 500000;
+
+    @Test
+    public void referencePositions_matchKnownCounts() {
+        for (int i = 0; i < Perft.referencePositions.length; i++) {
+            Perft perft = new Perft(Perft.loadGame(Perft.referencePositions[i]));
+            for (int depth = 1; depth <= Perft.referenceCounts[i].length; depth++) {
+                long expected = Perft.referenceCounts[i][depth - 1];
+                if (expected > maxNodes) {
+                    break;
+                }
+                assertEquals(Perft.referencePositions[i] + " depth " + depth, expected, perft.perft(depth));
+            }
+        }
+    }
+
+    @Test
+    public void enPassantSquare_isReadFromFen() {
+        // Only the en passant capture exf6 differs from the same position without the target square.
+        Perft withEnPassant = new Perft(Perft.loadGame("rnbqkbnr/ppppp1pp/8/4Pp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"));
+        Perft withoutEnPassant = new Perft(Perft.loadGame("rnbqkbnr/ppppp1pp/8/4Pp2/8/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3"));
+        assertEquals(withoutEnPassant.perft(1) + 1, withEnPassant.perft(1));
+    }
+
+    @Test
+    public void divide_sumsToPerft() {
+        Perft perft = new Perft(Perft.loadGame(Perft.referencePositions[1]));
+        long total = 0;
+        for (long count : perft.divide(3).values()) {
+            total += count;
+        }
+        assertEquals(perft.perft(3), total);
+    }
+
+    @Test
+    public void cachedPerft_matchesKnownCounts() {
+        // A tiny cache, so that entries get replaced too.
+        PerftCache cache = new PerftCache(1);
+        for (int i = 0; i < Perft.referencePositions.length; i++) {
+            Perft perft = new Perft(Perft.loadGame(Perft.referencePositions[i]), cache);
+            assertEquals(Perft.referencePositions[i], Perft.referenceCounts[i][3], perft.perft(4));
+        }
+    }
+
+    @Test
+    public void parallelPerft_matchesKnownCounts() {
+        ParallelPerft parallelPerft = new ParallelPerft(2, 2);
+        try {
+            assertEquals(Perft.referenceCounts[1][2], parallelPerft.perft(Perft.loadGame(Perft.referencePositions[1]), 3));
+            assertEquals(Perft.referenceCounts[3][3], parallelPerft.perft(Perft.loadGame(Perft.referencePositions[3]), 4));
+        } finally {
+            parallelPerft.shutdown();
+        }
+    }
+}
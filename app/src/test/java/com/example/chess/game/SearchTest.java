@@ -0,0 +1,130 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.Move;
+import com.example.chess.entities.PackedMove;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchTest {
+
+    private static Search newSearch(String fen) {
+        return new Search(Perft.loadGame(fen), new TranspositionTable(1));
+    }
+
+    private static String findBestMove(String fen, int depth) {
+        return PackedMove.toUci(newSearch(fen).findBestMove(depth, 0));
+    }
+
+    @Test
+    public void search_findsMateInOne() {
+        // Back rank mate.
+        assertEquals("a1a8", findBestMove("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 2));
+    }
+
+    @Test
+    public void mate_isScoredAboveTheMateBound() {
+        // Rh8 is mate.
+        Search search = newSearch("k7/8/1K6/8/8/8/8/7R w - - 0 1");
+        search.findBestMove(3, 0);
+        assertEquals(Search.mateScore - 1, search.getBestScore());
+        assertTrue(search.getBestScore() > Search.mateBound);
+    }
+
+    @Test
+    public void search_winsTheHangingQueen() {
+        assertEquals("d1d8", findBestMove("3q2k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1", 3));
+    }
+
+    @Test
+    public void search_returnsAMoveWhenTheNodeLimitIsReached() {
+        Search search = newSearch(Perft.referencePositions[1]);
+        int move = search.findBestMove(20, 1000);
+        assertTrue(move != PackedMove.none);
+        assertTrue(search.getNodes() <= 1000);
+    }
+
+    @Test
+    public void search_returnsNoMoveWhenMated() {
+        assertEquals(PackedMove.none, newSearch("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1").findBestMove(3, 0));
+    }
+
+    @Test
+    public void search_stopsAtTheHardDeadline() {
+        TimeManager timeManager = new TimeManager();
+        timeManager.startFixedTime(100);
+        Search search = newSearch(Perft.referencePositions[1]);
+        int move = search.findBestMove(MovementHandler.maxPly - 1, 0, timeManager);
+        assertTrue(move != PackedMove.none);
+        assertTrue(search.getCompletedDepth() >= 1);
+        assertTrue(timeManager.getElapsedTime() < 1000);
+    }
+
+    @Test
+    public void selectiveSearch_findsTheSameMateAsTheFullSearch() {
+        // Kb6 Kb8 Rh8 and Kc7 Ka7 Ra1 are both mates in two.
+        String fen = "k7/8/2K5/8/8/8/8/7R w - - 0 1";
+        Search full = newSearch(fen);
+        full.nullMovePruning = false;
+        full.reverseFutilityPruning = false;
+        full.lateMoveReductions = false;
+        full.checkExtensions = false;
+        full.findBestMove(5, 0);
+        assertEquals(Search.mateScore - 3, full.getBestScore());
+        Search selective = newSearch(fen);
+        selective.findBestMove(5, 0);
+        assertEquals(Search.mateScore - 3, selective.getBestScore());
+    }
+
+    @Test
+    public void parallelSearch_findsMateInOne() {
+        ParallelSearch search = new ParallelSearch(Perft.loadGame("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"),
+                new TranspositionTable(1), 3);
+        try {
+            TimeManager timeManager = new TimeManager();
+            timeManager.startFixedTime(200);
+            assertEquals("a1a8", PackedMove.toUci(search.findBestMove(MovementHandler.maxPly - 1, 0, timeManager)));
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelSearch_canBeUsedForTheWholeGame() {
+        // Mate in two, white then black then white searching with the same helpers.
+        Game game = Perft.loadGame("k7/8/2K5/8/8/8/8/7R w - - 0 1");
+        ParallelSearch search = new ParallelSearch(game, new TranspositionTable(1), 3);
+        try {
+            for (int i = 0; i < 3; i++) {
+                TimeManager timeManager = new TimeManager();
+                timeManager.startFixedTime(1000);
+                game.makeMove(search.findBestMove(5, 0, timeManager));
+            }
+            assertEquals(Search.mateScore - 1, search.getMainSearch().getBestScore());
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    public void aiPlayer_findsTheMoveInBackground() throws InterruptedException {
+        AIPlayer player = new AIPlayer(Perft.loadGame("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"));
+        player.moveTime = 200;
+        final CountDownLatch done = new CountDownLatch(1);
+        final Move[] found = new Move[1];
+        player.findBestMoveInBackground(new AIPlayer.MoveListener() {
+            @Override
+            public void onMoveFound(Move move) {
+                found[0] = move;
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("a1a8", PackedMove.toUci(found[0].packedMove));
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StaticExchangeTest {
+
+    private static int evaluate(String fen, int initialSquare, int targetSquare) {
+        Game game = Perft.loadGame(fen);
+        return new StaticExchange().evaluate(game.position, PackedMove.encode(initialSquare, targetSquare, PackedMove.capture));
+    }
+
+    @Test
+    public void undefendedPawn_isWon() {
+        // Rxe5.
+        assertEquals(100, evaluate("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", 4, 36));
+    }
+
+    @Test
+    public void defendedPawn_costsTheKnight() {
+        // Nxe5 Nxe5 Rxe5 Bxe5 Qxe5 Qxe5: the queens behind the rook and the bishop take part in
+        // the exchange, which loses the knight for a pawn.
+        assertEquals(100 - 320, evaluate("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1", 19, 36));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void storedEntry_isReadBack() {
+        TranspositionTable tt = new TranspositionTable(1);
+        int move = PackedMove.encode(12, 28, PackedMove.doublePawnPush);
+        tt.store(0x123456789ABCDEFL, move, -Search.mateScore + 3, 7, TranspositionTable.upperBound);
+        long data = tt.probe(0x123456789ABCDEFL);
+        assertEquals(move, TranspositionTable.getMove(data));
+        assertEquals(-Search.mateScore + 3, TranspositionTable.getScore(data));
+        assertEquals(7, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.upperBound, TranspositionTable.getBound(data));
+        assertEquals(0, tt.probe(0x123456789ABCDEEL));
+    }
+
+    @Test
+    public void fullBucket_replacesTheShallowestEntry() {
+        TranspositionTable tt = new TranspositionTable(1);
+        // The keys differ only above the index bits, so they all share a bucket.
+        for (int i = 0; i < TranspositionTable.bucketSize; i++) {
+            tt.store((i + 1L) << 40, PackedMove.none, 0, 10 + i, TranspositionTable.exactScore);
+        }
+        tt.store(100L << 40, PackedMove.none, 0, 1, TranspositionTable.exactScore);
+        assertEquals(0, tt.probe(1L << 40));
+        assertEquals(11, TranspositionTable.getDepth(tt.probe(2L << 40)));
+        assertEquals(1, TranspositionTable.getDepth(tt.probe(100L << 40)));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.chess.game;
+
+import com.example.chess.entities.PackedMove;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ZobristTest {
+
+    @Test
+    public void incrementalKey_matchesRecomputedKey() {
+        Game.debugZobristKeys = true;
+        try {
+            // Every make and unmake of the tree checks the key against a recomputed one.
+            for (String fen : Perft.referencePositions) {
+                new Perft(Perft.loadGame(fen)).perft(3);
+            }
+        } finally {
+            Game.debugZobristKeys = false;
+        }
+    }
+
+    @Test
+    public void transpositions_haveTheSameKey() {
+        Game game = Perft.loadGame(Perft.initialPosition);
+        long initialKey = game.getZobristKey();
+        // Nf3 Nf6 Ng1 Ng8 goes back to the initial position.
+        game.makeMove(PackedMove.encode(6, 21, PackedMove.quiet));
+        game.makeMove(PackedMove.encode(62, 45, PackedMove.quiet));
+        game.makeMove(PackedMove.encode(21, 6, PackedMove.quiet));
+        assertNotEquals(initialKey, game.getZobristKey());
+        game.makeMove(PackedMove.encode(45, 62, PackedMove.quiet));
+        assertEquals(initialKey, game.getZobristKey());
+    }
+
+    @Test
+    public void gameCopy_seesTheRepetitionsOfTheOriginal() {
+        Game game = Perft.loadGame(Perft.initialPosition);
+        // Nf3 Nf6 Ng1, then Ng8 on the copy goes back to the initial position, played before
+        // the copy was made.
+        game.makeMove(PackedMove.encode(6, 21, PackedMove.quiet));
+        game.makeMove(PackedMove.encode(62, 45, PackedMove.quiet));
+        game.makeMove(PackedMove.encode(21, 6, PackedMove.quiet));
+        Game copy = new Game(game);
+        assertFalse(copy.isRepetition());
+        copy.makeMove(PackedMove.encode(45, 62, PackedMove.quiet));
+        assertTrue(copy.isRepetition());
+        copy.unmakeMove();
+        assertEquals(game.getZobristKey(), copy.getZobristKey());
+    }
+
+    @Test
+    public void nullMove_isTakenBack() {
+        Game game = Perft.loadGame("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        long key = game.getZobristKey();
+        game.makeNullMove();
+        assertEquals(Game.noEnPassant, game.enPassant);
+        assertEquals(Zobrist.computeKey(game), game.getZobristKey());
+        game.unmakeNullMove();
+        assertEquals(key, game.getZobristKey());
+        assertEquals(20, game.enPassant);
+    }
+
+    @Test
+    public void unusableEnPassantSquare_isNotPartOfTheKey() {
+        // No black pawn can capture on e3, so the position is the same as without the square.
+        assertEquals(Perft.loadGame("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1").getZobristKey(),
+                Perft.loadGame("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1").getZobristKey());
+    }
+}